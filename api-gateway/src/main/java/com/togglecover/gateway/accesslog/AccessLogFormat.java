@@ -0,0 +1,150 @@
+package com.togglecover.gateway.accesslog;
+
+import org.springframework.http.HttpMethod;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * On-disk layout shared by {@link AccessLogWriter} and {@link AccessLogReader}.
+ *
+ * <p>A segment file is a {@value #HEADER_SIZE}-byte header followed by fixed
+ * {@value #RECORD_SIZE}-byte records. The unused tail of a segment is zero
+ * filled, so the first record with a zero timestamp marks the end of data.
+ *
+ * <pre>
+ * offset size field
+ *      0    8 timestamp, epoch millis
+ *      8    4 duration, microseconds
+ *     12    2 status
+ *     14    1 method code (see {@link #methodCode})
+ *     15    1 flags (bit 0: target truncated)
+ *     16    8 response bytes
+ *     24   16 client address (IPv6, or IPv4 in the first 4 bytes and zeros)
+ *     40   24 route id, ASCII
+ *     64   32 user id, ASCII
+ *     96   32 upstream instance, ASCII
+ *    128  128 request target (raw path and query), ASCII
+ * </pre>
+ * Text fields are NUL padded and truncated to their width.
+ */
+final class AccessLogFormat {
+
+    static final int MAGIC = 0x4757414C; // "GWAL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 256;
+
+    static final int TIMESTAMP = 0;
+    static final int DURATION = 8;
+    static final int STATUS = 12;
+    static final int METHOD = 14;
+    static final int FLAGS = 15;
+    static final int BYTES = 16;
+    static final int CLIENT = 24;
+    static final int CLIENT_WIDTH = 16;
+    static final int ROUTE = 40;
+    static final int ROUTE_WIDTH = 24;
+    static final int USER = 64;
+    static final int USER_WIDTH = 32;
+    static final int UPSTREAM = 96;
+    static final int UPSTREAM_WIDTH = 32;
+    static final int TARGET = 128;
+    static final int TARGET_WIDTH = 128;
+
+    static final byte FLAG_TARGET_TRUNCATED = 1;
+
+    static final String SEGMENT_PREFIX = "access-";
+    static final String SEGMENT_SUFFIX = ".gwlog";
+    static final DateTimeFormatter SEGMENT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private static final HttpMethod[] METHODS = {
+            null, HttpMethod.GET, HttpMethod.HEAD, HttpMethod.POST, HttpMethod.PUT,
+            HttpMethod.PATCH, HttpMethod.DELETE, HttpMethod.OPTIONS, HttpMethod.TRACE
+    };
+
+    private AccessLogFormat() {
+    }
+
+    /**
+     * Segment names sort in creation order; the sequence separates segments created in the same millisecond.
+     */
+    static String segmentName(LocalDateTime createdAt, int sequence) {
+        return SEGMENT_PREFIX + SEGMENT_TIMESTAMP.format(createdAt) + String.format("-%06d", sequence) + SEGMENT_SUFFIX;
+    }
+
+    static boolean isSegmentName(String fileName) {
+        return fileName.startsWith(SEGMENT_PREFIX) && fileName.endsWith(SEGMENT_SUFFIX);
+    }
+
+    static void writeHeader(ByteBuffer segment, long createdAtMillis) {
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putInt(8, RECORD_SIZE);
+        segment.putLong(12, createdAtMillis);
+    }
+
+    static boolean hasValidHeader(ByteBuffer segment) {
+        return segment.capacity() >= HEADER_SIZE
+                && segment.getInt(0) == MAGIC
+                && segment.getInt(4) == VERSION
+                && segment.getInt(8) == RECORD_SIZE;
+    }
+
+    static byte methodCode(HttpMethod method) {
+        for (int i = 1; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+
+    static String methodName(byte code) {
+        return code > 0 && code < METHODS.length ? METHODS[code].name() : "OTHER";
+    }
+
+    /**
+     * Writes {@code value} as NUL-padded ASCII without allocating; non-ASCII chars become '?'.
+     * Returns true if the value was truncated.
+     */
+    static boolean putAscii(ByteBuffer buffer, int offset, int width, CharSequence value) {
+        int length = value == null ? 0 : value.length();
+        int written = Math.min(length, width);
+        for (int i = 0; i < written; i++) {
+            char c = value.charAt(i);
+            buffer.put(offset + i, c < 0x80 ? (byte) c : (byte) '?');
+        }
+        for (int i = written; i < width; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+        return length > width;
+    }
+
+    /**
+     * Appends a second value to a field already holding {@code used} bytes, e.g. the query after the path.
+     */
+    static boolean appendAscii(ByteBuffer buffer, int offset, int width, int used, char separator,
+                               CharSequence value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        if (used >= width) {
+            return true;
+        }
+        buffer.put(offset + used, (byte) separator);
+        return putAscii(buffer, offset + used + 1, width - used - 1, value);
+    }
+
+    static String getAscii(ByteBuffer buffer, int offset, int width) {
+        int length = 0;
+        while (length < width && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,207 @@
+package com.togglecover.gateway.accesslog;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Offline reader for gateway access-log segments: prints matching records, and
+ * with {@code --follow} keeps tailing the newest segment.
+ *
+ * <pre>
+ * java -cp api-gateway.jar -Dloader.main=com.togglecover.gateway.accesslog.AccessLogReader \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     /tmp/api-gateway/access-log [--follow] [--route=ID] [--user=ID] [--status=503|5xx] [--path=PREFIX] [--min-ms=N]
+ * </pre>
+ */
+public final class AccessLogReader {
+
+    private static final long FOLLOW_POLL_MILLIS = 500;
+
+    private final Filter filter;
+    private final PrintStream out;
+
+    private AccessLogReader(Filter filter, PrintStream out) {
+        this.filter = filter;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("usage: AccessLogReader <directory|segment> [--follow] [--route=ID] [--user=ID]"
+                    + " [--status=503|5xx] [--path=PREFIX] [--min-ms=N]");
+            System.exit(2);
+        }
+
+        Path location = Path.of(args[0]);
+        String[] options = Arrays.copyOfRange(args, 1, args.length);
+        boolean follow = Arrays.asList(options).contains("--follow");
+        AccessLogReader reader = new AccessLogReader(Filter.parse(options), System.out);
+
+        if (!Files.isDirectory(location)) {
+            reader.readSegment(location, AccessLogFormat.HEADER_SIZE);
+            return;
+        }
+        reader.readDirectory(location, follow);
+    }
+
+    private void readDirectory(Path directory, boolean follow) throws IOException, InterruptedException {
+        List<Path> segments = listSegments(directory);
+        Path current = null;
+        int offset = AccessLogFormat.HEADER_SIZE;
+        for (Path segment : segments) {
+            current = segment;
+            offset = readSegment(segment, AccessLogFormat.HEADER_SIZE);
+        }
+
+        while (follow) {
+            Thread.sleep(FOLLOW_POLL_MILLIS);
+            if (current != null) {
+                int next = readSegment(current, offset);
+                if (next != offset) {
+                    offset = next;
+                    continue;
+                }
+            }
+            // Nothing new in the current segment: move on once the writer has rotated
+            for (Path segment : listSegments(directory)) {
+                if (current == null || segment.getFileName().toString()
+                        .compareTo(current.getFileName().toString()) > 0) {
+                    current = segment;
+                    offset = readSegment(segment, AccessLogFormat.HEADER_SIZE);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints matching records from {@code offset} on and returns the offset after the last complete record.
+     */
+    private int readSegment(Path file, int offset) throws IOException {
+        ByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (!AccessLogFormat.hasValidHeader(segment)) {
+            System.err.println("Skipping " + file + ": not an access-log segment");
+            return offset;
+        }
+
+        while (offset + AccessLogFormat.RECORD_SIZE <= segment.capacity()
+                && segment.getLong(offset + AccessLogFormat.TIMESTAMP) != 0) {
+            if (filter.matches(segment, offset)) {
+                out.println(format(segment, offset));
+            }
+            offset += AccessLogFormat.RECORD_SIZE;
+        }
+        return offset;
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> AccessLogFormat.isSegmentName(path.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String format(ByteBuffer segment, int offset) {
+        boolean truncated = (segment.get(offset + AccessLogFormat.FLAGS) & AccessLogFormat.FLAG_TARGET_TRUNCATED) != 0;
+        return String.format("%s %s %s%s %d %.3fms %dB route=%s user=%s upstream=%s client=%s",
+                Instant.ofEpochMilli(segment.getLong(offset + AccessLogFormat.TIMESTAMP)),
+                AccessLogFormat.methodName(segment.get(offset + AccessLogFormat.METHOD)),
+                AccessLogFormat.getAscii(segment, offset + AccessLogFormat.TARGET, AccessLogFormat.TARGET_WIDTH),
+                truncated ? "..." : "",
+                segment.getShort(offset + AccessLogFormat.STATUS),
+                segment.getInt(offset + AccessLogFormat.DURATION) / 1000.0,
+                segment.getLong(offset + AccessLogFormat.BYTES),
+                orDash(AccessLogFormat.getAscii(segment, offset + AccessLogFormat.ROUTE, AccessLogFormat.ROUTE_WIDTH)),
+                orDash(AccessLogFormat.getAscii(segment, offset + AccessLogFormat.USER, AccessLogFormat.USER_WIDTH)),
+                orDash(AccessLogFormat.getAscii(segment, offset + AccessLogFormat.UPSTREAM,
+                        AccessLogFormat.UPSTREAM_WIDTH)),
+                clientAddress(segment, offset + AccessLogFormat.CLIENT));
+    }
+
+    private static String orDash(String value) {
+        return value.isEmpty() ? "-" : value;
+    }
+
+    private static String clientAddress(ByteBuffer segment, int offset) {
+        byte[] raw = new byte[AccessLogFormat.CLIENT_WIDTH];
+        segment.get(offset, raw);
+        boolean ipv4 = true;
+        for (int i = 4; i < raw.length; i++) {
+            ipv4 &= raw[i] == 0;
+        }
+        try {
+            return InetAddress.getByAddress(ipv4 ? Arrays.copyOf(raw, 4) : raw).getHostAddress();
+        } catch (UnknownHostException e) {
+            return "-";
+        }
+    }
+
+    private record Filter(String route, String user, String status, String pathPrefix, double minMillis) {
+
+        static Filter parse(String[] options) {
+            String route = null;
+            String user = null;
+            String status = null;
+            String pathPrefix = null;
+            double minMillis = 0;
+            for (String option : options) {
+                if (option.startsWith("--route=")) {
+                    route = option.substring("--route=".length());
+                } else if (option.startsWith("--user=")) {
+                    user = option.substring("--user=".length());
+                } else if (option.startsWith("--status=")) {
+                    status = option.substring("--status=".length());
+                } else if (option.startsWith("--path=")) {
+                    pathPrefix = option.substring("--path=".length());
+                } else if (option.startsWith("--min-ms=")) {
+                    minMillis = Double.parseDouble(option.substring("--min-ms=".length()));
+                } else if (!option.equals("--follow")) {
+                    throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            return new Filter(route, user, status, pathPrefix, minMillis);
+        }
+
+        boolean matches(ByteBuffer segment, int offset) {
+            if (route != null && !route.equals(AccessLogFormat.getAscii(segment, offset + AccessLogFormat.ROUTE,
+                    AccessLogFormat.ROUTE_WIDTH))) {
+                return false;
+            }
+            if (user != null && !user.equals(AccessLogFormat.getAscii(segment, offset + AccessLogFormat.USER,
+                    AccessLogFormat.USER_WIDTH))) {
+                return false;
+            }
+            if (status != null && !statusMatches(segment.getShort(offset + AccessLogFormat.STATUS))) {
+                return false;
+            }
+            if (pathPrefix != null && !AccessLogFormat.getAscii(segment, offset + AccessLogFormat.TARGET,
+                    AccessLogFormat.TARGET_WIDTH).startsWith(pathPrefix)) {
+                return false;
+            }
+            return segment.getInt(offset + AccessLogFormat.DURATION) / 1000.0 >= minMillis;
+        }
+
+        private boolean statusMatches(int value) {
+            // "5xx" matches the class, anything else the exact code
+            if (status.length() == 3 && status.endsWith("xx")) {
+                return value / 100 == status.charAt(0) - '0';
+            }
+            return String.valueOf(value).equals(status);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.togglecover.gateway.accesslog;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded multi-producer, single-consumer ring of fixed-size records in one
+ * preallocated direct buffer. Producers claim a sequence with a CAS, fill the
+ * slot in place and publish it; when the ring is full the record is dropped
+ * and counted rather than blocking the caller.
+ */
+class AccessLogRing {
+
+    private final int capacity;
+    private final int mask;
+    private final ByteBuffer slots;
+
+    // Holds sequence + 1 once the slot's record for that sequence is complete
+    private final AtomicLongArray published;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+
+    AccessLogRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = ByteBuffer.allocateDirect(capacity * AccessLogFormat.RECORD_SIZE);
+        this.published = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Claims the next sequence, or returns -1 (and counts a drop) when the ring is full.
+     */
+    long claim() {
+        while (true) {
+            long current = tail.get();
+            if (current - head >= capacity) {
+                dropped.increment();
+                return -1;
+            }
+            if (tail.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * The shared slot buffer; a claimed sequence owns the bytes from {@link #offset} for one record.
+     * Only absolute get/put methods may be used on it.
+     */
+    ByteBuffer slots() {
+        return slots;
+    }
+
+    int offset(long sequence) {
+        return (int) (sequence & mask) * AccessLogFormat.RECORD_SIZE;
+    }
+
+    void publish(long sequence) {
+        published.set((int) (sequence & mask), sequence + 1);
+    }
+
+    /**
+     * Consumer only: copies the next published record into {@code target} at its position.
+     * Returns false if the next record is not yet published.
+     */
+    boolean poll(ByteBuffer target) {
+        long next = head;
+        if (published.get((int) (next & mask)) != next + 1) {
+            return false;
+        }
+        int position = target.position();
+        int source = offset(next);
+        // Timestamp last: a reader tailing the mapped file treats a non-zero timestamp as a complete record
+        target.put(position + 8, slots, source + 8, AccessLogFormat.RECORD_SIZE - 8);
+        target.putLong(position + AccessLogFormat.TIMESTAMP, slots.getLong(source + AccessLogFormat.TIMESTAMP));
+        target.position(position + AccessLogFormat.RECORD_SIZE);
+        head = next + 1;
+        return true;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,213 @@
+package com.togglecover.gateway.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Gateway access log. Request threads encode a fixed-layout record straight
+ * into {@link AccessLogRing}; a single background thread drains the ring into
+ * memory-mapped segment files, rotating when a segment fills and keeping the
+ * newest {@code max-segments}. Nothing on the request path blocks or does I/O.
+ *
+ * @see AccessLogFormat
+ * @see AccessLogReader
+ */
+@Component
+public class AccessLogWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLogWriter.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final AccessLogRing ring;
+    private final LongAdder written = new LongAdder();
+    private final MeterRegistry meterRegistry;
+
+    private volatile boolean running;
+    private Thread drainer;
+    private MappedByteBuffer segment;
+    private int segmentSequence;
+
+    public AccessLogWriter(@Value("${gateway.access-log.enabled:true}") boolean enabled,
+                           @Value("${gateway.access-log.directory:${java.io.tmpdir}/api-gateway/access-log}") Path directory,
+                           @Value("${gateway.access-log.segment-size:64MB}") DataSize segmentSize,
+                           @Value("${gateway.access-log.max-segments:10}") int maxSegments,
+                           @Value("${gateway.access-log.ring-capacity:16384}") int ringCapacity,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory;
+        // Whole records only, after the header
+        long records = (segmentSize.toBytes() - AccessLogFormat.HEADER_SIZE) / AccessLogFormat.RECORD_SIZE;
+        this.segmentSize = AccessLogFormat.HEADER_SIZE + Math.max(1, records) * AccessLogFormat.RECORD_SIZE;
+        this.maxSegments = maxSegments;
+        this.ring = new AccessLogRing(ringCapacity);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        FunctionCounter.builder("gateway.access-log.dropped", ring, AccessLogRing::getDropped)
+                .register(meterRegistry);
+        FunctionCounter.builder("gateway.access-log.written", written, LongAdder::sum)
+                .register(meterRegistry);
+        Gauge.builder("gateway.access-log.pending", ring, AccessLogRing::size)
+                .register(meterRegistry);
+
+        running = true;
+        drainer = new Thread(this::drainLoop, "access-log-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (drainer == null) {
+            return;
+        }
+        running = false;
+        drainer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Appends one request to the log; returns false if it was dropped because the ring is full.
+     */
+    public boolean append(long timestampMillis, long durationNanos, int status, HttpMethod method,
+                          long responseBytes, InetSocketAddress client, String routeId, String userId,
+                          String upstream, String rawPath, String rawQuery) {
+        if (!running) {
+            return false;
+        }
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            return false;
+        }
+
+        ByteBuffer slots = ring.slots();
+        int base = ring.offset(sequence);
+        try {
+            slots.putLong(base + AccessLogFormat.TIMESTAMP, timestampMillis);
+            slots.putInt(base + AccessLogFormat.DURATION,
+                    (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(durationNanos)));
+            slots.putShort(base + AccessLogFormat.STATUS, (short) status);
+            slots.put(base + AccessLogFormat.METHOD, AccessLogFormat.methodCode(method));
+            slots.putLong(base + AccessLogFormat.BYTES, responseBytes);
+            putAddress(slots, base + AccessLogFormat.CLIENT, client);
+            AccessLogFormat.putAscii(slots, base + AccessLogFormat.ROUTE, AccessLogFormat.ROUTE_WIDTH, routeId);
+            AccessLogFormat.putAscii(slots, base + AccessLogFormat.USER, AccessLogFormat.USER_WIDTH, userId);
+            AccessLogFormat.putAscii(slots, base + AccessLogFormat.UPSTREAM, AccessLogFormat.UPSTREAM_WIDTH, upstream);
+
+            boolean truncated = AccessLogFormat.putAscii(slots, base + AccessLogFormat.TARGET,
+                    AccessLogFormat.TARGET_WIDTH, rawPath);
+            int pathLength = rawPath == null ? 0 : Math.min(rawPath.length(), AccessLogFormat.TARGET_WIDTH);
+            truncated |= AccessLogFormat.appendAscii(slots, base + AccessLogFormat.TARGET,
+                    AccessLogFormat.TARGET_WIDTH, pathLength, '?', rawQuery);
+            slots.put(base + AccessLogFormat.FLAGS, truncated ? AccessLogFormat.FLAG_TARGET_TRUNCATED : 0);
+        } finally {
+            // Always publish so the drainer never stalls behind a half-written slot
+            ring.publish(sequence);
+        }
+        return true;
+    }
+
+    private static void putAddress(ByteBuffer slots, int offset, InetSocketAddress client) {
+        InetAddress address = client == null ? null : client.getAddress();
+        byte[] raw = address == null ? null : address.getAddress();
+        for (int i = 0; i < AccessLogFormat.CLIENT_WIDTH; i++) {
+            slots.put(offset + i, raw != null && i < raw.length ? raw[i] : 0);
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            while (true) {
+                boolean drained = false;
+                while (true) {
+                    if (segment == null || segment.remaining() < AccessLogFormat.RECORD_SIZE) {
+                        rotate();
+                    }
+                    if (!ring.poll(segment)) {
+                        break;
+                    }
+                    written.increment();
+                    drained = true;
+                }
+                if (!drained) {
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Access log writer stopped: {}", e.getMessage(), e);
+            running = false;
+        } finally {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+
+        Path file = directory.resolve(AccessLogFormat.segmentName(LocalDateTime.now(), segmentSequence++));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        AccessLogFormat.writeHeader(segment, System.currentTimeMillis());
+        segment.position(AccessLogFormat.HEADER_SIZE);
+        log.debug("Access log rotated to {}", file);
+
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.filter(path -> AccessLogFormat.isSegmentName(path.getFileName().toString()))
+                    .sorted()
+                    .toList();
+        }
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+}
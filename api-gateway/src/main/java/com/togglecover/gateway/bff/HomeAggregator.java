@@ -0,0 +1,109 @@
+package com.togglecover.gateway.bff;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Builds the app home screen in one request: profile and stats are fetched from
+ * user-service in parallel, each with its own timeout, and the session section
+ * comes from the claims the gateway already verified. A failed or slow backend
+ * leaves its section null and is listed under {@code errors}.
+ */
+@Component
+public class HomeAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(HomeAggregator.class);
+
+    private static final String USER_SERVICE = "http://USER-SERVICE";
+
+    private final WebClient webClient;
+    private final Duration profileTimeout;
+    private final Duration statsTimeout;
+
+    public HomeAggregator(WebClient.Builder loadBalancedWebClientBuilder,
+                          @Value("${gateway.bff.home.profile-timeout:800ms}") Duration profileTimeout,
+                          @Value("${gateway.bff.home.stats-timeout:800ms}") Duration statsTimeout) {
+        this.webClient = loadBalancedWebClientBuilder.baseUrl(USER_SERVICE).build();
+        this.profileTimeout = profileTimeout;
+        this.statsTimeout = statsTimeout;
+    }
+
+    public Mono<Map<String, Object>> aggregate(Claims claims, String authorization) {
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        String userId = claims.get("userId", String.class);
+        Mono<Section> profile = fetch("profile", "/api/v1/users/profile", authorization, userId, profileTimeout);
+        Mono<Section> stats = fetch("stats", "/api/v1/users/profile/stats", authorization, userId, statsTimeout);
+
+        return Mono.zip(profile, stats)
+                .map(sections -> {
+                    Map<String, Object> home = new LinkedHashMap<>();
+                    home.put("profile", sections.getT1().value(errors));
+                    home.put("stats", sections.getT2().value(errors));
+                    home.put("session", session(claims));
+                    home.put("partial", !errors.isEmpty());
+                    home.put("errors", errors);
+                    return home;
+                });
+    }
+
+    private Mono<Section> fetch(String name, String path, String authorization, String userId, Duration timeout) {
+        return webClient.get()
+                .uri(path)
+                .header(HttpHeaders.AUTHORIZATION, authorization)
+                // Same identity header the proxied routes carry (also drives load balancer affinity)
+                .header("X-User-Id", userId)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(timeout)
+                .map(body -> new Section(name, body, null))
+                .onErrorResume(e -> {
+                    String reason = describe(e);
+                    log.warn("Home aggregation: {} unavailable ({})", name, reason);
+                    return Mono.just(new Section(name, null, reason));
+                })
+                .defaultIfEmpty(new Section(name, null, "empty response"));
+    }
+
+    private static Map<String, Object> session(Claims claims) {
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("userId", claims.get("userId", String.class));
+        session.put("phone", claims.get("phone", String.class));
+        session.put("userType", claims.get("userType", String.class));
+        session.put("expiresAt", claims.getExpiration() == null ? null : claims.getExpiration().toInstant());
+        return session;
+    }
+
+    private static String describe(Throwable e) {
+        if (e instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            return "status " + responseException.getStatusCode().value();
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    private record Section(String name, JsonNode body, String error) {
+
+        JsonNode value(Map<String, String> errors) {
+            if (error != null) {
+                errors.put(name, error);
+            }
+            return body;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.togglecover.gateway.bff;
+
+import com.togglecover.gateway.filter.JwtAuthenticationFilter;
+import io.jsonwebtoken.Claims;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Target of the {@code /api/v1/home} route's forward. Only reachable with the
+ * claims the route's JWT filter attaches; direct calls are rejected.
+ */
+@RestController
+public class HomeController {
+
+    private final HomeAggregator homeAggregator;
+
+    public HomeController(HomeAggregator homeAggregator) {
+        this.homeAggregator = homeAggregator;
+    }
+
+    @GetMapping("/internal/home")
+    public Mono<ResponseEntity<Map<String, Object>>> home(ServerWebExchange exchange) {
+        Claims claims = exchange.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTR);
+        if (claims == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Unauthorized", "status", HttpStatus.UNAUTHORIZED.value())));
+        }
+
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        return homeAggregator.aggregate(claims, authorization)
+                .map(ResponseEntity::ok);
+    }
+}
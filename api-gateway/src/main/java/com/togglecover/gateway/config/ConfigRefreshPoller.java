@@ -0,0 +1,78 @@
+package com.togglecover.gateway.config;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.cloud.gateway.event.RefreshRoutesEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Re-reads the environment from config-service periodically and rebuilds the
+ * route table when anything changed, so route and filter changes apply
+ * without a restart. If config-service was down at startup, the first
+ * successful poll loads the routes.
+ *
+ * <p>Only the environment is refreshed (rebinding configuration properties);
+ * refresh-scoped beans such as the Eureka client are left alone.
+ */
+@Component
+public class ConfigRefreshPoller {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigRefreshPoller.class);
+
+    private final ContextRefresher contextRefresher;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${gateway.config.refresh-interval:30s}")
+    private Duration refreshInterval;
+
+    private Disposable pollTask;
+
+    public ConfigRefreshPoller(ContextRefresher contextRefresher, ApplicationEventPublisher eventPublisher) {
+        this.contextRefresher = contextRefresher;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // The refresher re-runs config data loading, which needs the application fully started
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPolling() {
+        pollTask = Flux.interval(refreshInterval, refreshInterval)
+                .onBackpressureDrop()
+                // Fetching from config-service blocks
+                .concatMap(tick -> Mono.fromCallable(contextRefresher::refreshEnvironment)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .doOnNext(this::onRefreshed)
+                        .onErrorResume(e -> {
+                            log.warn("Configuration refresh failed, keeping current routes: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopPolling() {
+        if (pollTask != null) {
+            pollTask.dispose();
+        }
+    }
+
+    private void onRefreshed(Set<String> changedKeys) {
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        log.info("Configuration changed ({} keys), refreshing routes", changedKeys.size());
+        eventPublisher.publishEvent(new RefreshRoutesEvent(this));
+    }
+}
@@ -1,32 +1,30 @@
 package com.togglecover.gateway.config;
 
-import com.togglecover.gateway.filter.JwtAuthenticationFilter;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.togglecover.gateway.routing.IndexedRoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
 import org.springframework.cloud.gateway.route.RouteLocator;
-import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
+/**
+ * Route definitions, public paths and per-route filter settings are served by
+ * config-service ({@code config/api-gateway.yml}) as
+ * {@code spring.cloud.gateway.routes} and reloaded by {@link ConfigRefreshPoller}.
+ */
 @Configuration
 public class GatewayConfig {
 
-    @Autowired
-    private JwtAuthenticationFilter filter;
-
     @Bean
-    public RouteLocator routes(RouteLocatorBuilder builder) {
-        return builder.routes()
-                .route("auth-service", r -> r
-                        .path("/api/v1/auth/**")
-                        .uri("lb://AUTH-SERVICE"))
-                .route("user-service", r -> r
-                        .path("/api/v1/users/**")
-                        .filters(f -> f.filter(filter.apply(new JwtAuthenticationFilter.Config())))
-                        .uri("lb://USER-SERVICE"))
-                .route("discovery-service", r -> r
-                        .path("/eureka/**")
-                        .filters(f -> f.setPath("/"))
-                        .uri("http://localhost:8761"))
-                .build();
+    public RoutePredicateHandlerMapping routePredicateHandlerMapping(FilteringWebHandler webHandler,
+                                                                     RouteLocator routeLocator,
+                                                                     RouteDefinitionLocator routeDefinitionLocator,
+                                                                     GlobalCorsProperties globalCorsProperties,
+                                                                     Environment environment) {
+        return new IndexedRoutePredicateHandlerMapping(webHandler, routeLocator, routeDefinitionLocator,
+                globalCorsProperties, environment);
     }
-}
\ No newline at end of file
+}
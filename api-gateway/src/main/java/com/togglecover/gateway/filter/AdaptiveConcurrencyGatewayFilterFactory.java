@@ -0,0 +1,195 @@
+package com.togglecover.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class AdaptiveConcurrencyGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<AdaptiveConcurrencyGatewayFilterFactory.Config> {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyGatewayFilterFactory.class);
+
+    private final ConcurrentHashMap<String, VegasConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public AdaptiveConcurrencyGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            String routeId = getRouteId(exchange);
+            VegasConcurrencyLimiter limiter = limiters.computeIfAbsent(routeId, id -> createLimiter(id, config));
+            if (!limiter.hasBounds(config.getMinLimit(), config.getMaxLimit(), config.getProbeInterval())) {
+                // Route reloaded with new bounds: keep what the limiter has learned, clamped to them
+                limiter.setBounds(config.getMinLimit(), config.getMaxLimit(), config.getProbeInterval());
+            }
+            VegasConcurrencyLimiter.Priority priority = resolvePriority(exchange.getRequest().getURI().getPath(), config);
+
+            if (!limiter.tryAcquire(priority)) {
+                Counter.builder("gateway.concurrency.rejected")
+                        .tag("route", routeId)
+                        .tag("priority", priority.name())
+                        .register(meterRegistry)
+                        .increment();
+                log.debug("Shedding {} request on route {} (limit {}, in flight {})",
+                        priority, routeId, (int) limiter.getLimit(), limiter.getInFlight());
+                return onRejected(exchange, config.getRetryAfterSeconds());
+            }
+
+            long start = System.nanoTime();
+            return chain.filter(exchange)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            // Client went away; the sample says nothing about backend capacity
+                            limiter.release();
+                            return;
+                        }
+                        HttpStatusCode status = exchange.getResponse().getStatusCode();
+                        boolean dropped = signal == SignalType.ON_ERROR
+                                || (status != null && (status.value() == 503 || status.value() == 504));
+                        limiter.release(System.nanoTime() - start, dropped);
+                    });
+        };
+    }
+
+    private VegasConcurrencyLimiter createLimiter(String routeId, Config config) {
+        VegasConcurrencyLimiter limiter = new VegasConcurrencyLimiter(
+                config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(), config.getProbeInterval());
+        Gauge.builder("gateway.concurrency.limit", limiter, VegasConcurrencyLimiter::getLimit)
+                .tag("route", routeId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.concurrency.in-flight", limiter, VegasConcurrencyLimiter::getInFlight)
+                .tag("route", routeId)
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    private VegasConcurrencyLimiter.Priority resolvePriority(String path, Config config) {
+        for (String prefix : config.getCriticalPaths()) {
+            if (path.startsWith(prefix)) {
+                return VegasConcurrencyLimiter.Priority.CRITICAL;
+            }
+        }
+        for (String prefix : config.getLowPriorityPaths()) {
+            if (path.startsWith(prefix)) {
+                return VegasConcurrencyLimiter.Priority.LOW;
+            }
+        }
+        return VegasConcurrencyLimiter.Priority.NORMAL;
+    }
+
+    private String getRouteId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "default";
+    }
+
+    private Mono<Void> onRejected(ServerWebExchange exchange, int retryAfterSeconds) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        exchange.getResponse().setStatusCode(status);
+        exchange.getResponse().getHeaders().add("Content-Type", "application/json");
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+
+        String body = String.format("{\"error\": \"%s\", \"status\": %d}",
+                "Service is overloaded. Try again later.", status.value());
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        return exchange.getResponse().writeWith(
+                Mono.just(exchange.getResponse().bufferFactory().wrap(bytes))
+        );
+    }
+
+    public static class Config {
+        private int initialLimit = 20;
+        private int minLimit = 5;
+        private int maxLimit = 500;
+        private int probeInterval = 1000;
+        private int retryAfterSeconds = 1;
+        private List<String> criticalPaths = new ArrayList<>();
+        private List<String> lowPriorityPaths = new ArrayList<>();
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public Config setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public Config setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public Config setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public int getProbeInterval() {
+            return probeInterval;
+        }
+
+        public Config setProbeInterval(int probeInterval) {
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public Config setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        public List<String> getCriticalPaths() {
+            return criticalPaths;
+        }
+
+        public Config setCriticalPaths(List<String> criticalPaths) {
+            this.criticalPaths = criticalPaths;
+            return this;
+        }
+
+        public List<String> getLowPriorityPaths() {
+            return lowPriorityPaths;
+        }
+
+        public Config setLowPriorityPaths(List<String> lowPriorityPaths) {
+            this.lowPriorityPaths = lowPriorityPaths;
+            return this;
+        }
+    }
+}
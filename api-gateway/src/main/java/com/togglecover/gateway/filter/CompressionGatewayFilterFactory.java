@@ -0,0 +1,400 @@
+package com.togglecover.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses responses for clients that accept gzip or deflate. Only the
+ * configured media types are compressed, each at its own level, and bodies
+ * below the minimum size are sent as they are. A body is buffered whole to be
+ * compressed, so bodies above the maximum size stream through uncompressed.
+ *
+ * <p>A strong ETag means the body is byte-identical for that ETag, so the
+ * compressed form of such responses is cached and reused rather than
+ * recompressed on every hit. The compressed variant is sent with a weak ETag
+ * and {@code Vary: Accept-Encoding}.
+ *
+ * <p>Upstream requests are sent without {@code Accept-Encoding}, so the
+ * filters behind this one (cache, coalescing) only ever handle identity bodies.
+ */
+@Component
+public class CompressionGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<CompressionGatewayFilterFactory.Config> {
+
+    /**
+     * Outermost of the body filters, ahead of coalescing and the cache (which then
+     * only see identity bodies) and of the response writer, which would otherwise
+     * bypass the compressing decorator.
+     */
+    public static final int ORDER = RequestCoalescingGatewayFilterFactory.ORDER - 1;
+
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<CompressedKey, byte[]> compressedBodies;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteCounters> routeCounters = new ConcurrentHashMap<>();
+
+    public CompressionGatewayFilterFactory(@Value("${gateway.compression.cache.max-size:16MB}") DataSize cacheSize,
+                                           MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.compressedBodies = Caffeine.newBuilder()
+                .maximumWeight(cacheSize.toBytes())
+                .weigher((CompressedKey key, byte[] value) -> value.length + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                .build();
+        this.meterRegistry = meterRegistry;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, compressedBodies, "gateway.compression.cache");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Map<MediaType, Integer> levels = new LinkedHashMap<>();
+        for (String entry : config.getLevels()) {
+            int separator = entry.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected type=level, got: " + entry);
+            }
+            levels.put(MediaType.parseMediaType(entry.substring(0, separator).trim()),
+                    Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+
+        GatewayFilter filter = (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            if (route == null || exchange.getRequest().getMethod() == HttpMethod.HEAD) {
+                return chain.filter(exchange);
+            }
+
+            ContentCoding coding = ContentCoding.negotiate(
+                    exchange.getRequest().getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+            RouteCounters counters = routeCounters.computeIfAbsent(route.getId(), RouteCounters::new);
+            CompressingResponse response = new CompressingResponse(exchange.getResponse(), coding, levels,
+                    config.getMinSize().toBytes(), config.getMaxSize().toBytes(), route.getId(), exchange.getRequest().getURI().getRawPath(),
+                    counters);
+
+            return chain.filter(exchange.mutate()
+                    .request(builder -> builder.headers(headers -> headers.remove(HttpHeaders.ACCEPT_ENCODING)))
+                    .response(response)
+                    .build());
+        };
+        return new OrderedGatewayFilter(filter, ORDER);
+    }
+
+    private class CompressingResponse extends ServerHttpResponseDecorator {
+
+        private final ContentCoding coding;
+        private final Map<MediaType, Integer> levels;
+        private final long minSize;
+        private final long maxSize;
+        private final String routeId;
+        private final String path;
+        private final RouteCounters counters;
+
+        CompressingResponse(ServerHttpResponse delegate, ContentCoding coding, Map<MediaType, Integer> levels,
+                            long minSize, long maxSize, String routeId, String path, RouteCounters counters) {
+            super(delegate);
+            this.coding = coding;
+            this.levels = levels;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.routeId = routeId;
+            this.path = path;
+            this.counters = counters;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            HttpHeaders headers = getDelegate().getHeaders();
+            Integer level = levelFor(headers.getContentType());
+            if (level == null) {
+                return super.writeWith(body);
+            }
+            // The representation depends on Accept-Encoding whether or not this client gets it compressed
+            if (!headers.getVary().contains(HttpHeaders.ACCEPT_ENCODING)) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+
+            long contentLength = headers.getContentLength();
+            if (coding == null || !isOk() || headers.containsKey(HttpHeaders.CONTENT_ENCODING) || noTransform(headers)
+                    || (contentLength >= 0 && (contentLength < minSize || contentLength > maxSize))) {
+                counters.skipped.increment();
+                return super.writeWith(body);
+            }
+
+            // Collect up to maxSize; the first part is then either the whole body or, once
+            // past the cap, what was buffered so far, sent ahead of the rest as it comes
+            AtomicLong buffered = new AtomicLong();
+            return Flux.<DataBuffer>from(body)
+                    .bufferUntil(buffer -> buffered.addAndGet(buffer.readableByteCount()) > maxSize)
+                    .switchOnFirst((first, parts) -> {
+                        if (!first.hasValue() || buffered.get() > maxSize) {
+                            counters.skipped.increment();
+                            return super.writeWith(parts.concatMapIterable(part -> part));
+                        }
+                        return parts.next().flatMap(part -> compress(bufferFactory().join(part), headers, level));
+                    })
+                    .then();
+        }
+
+        private Mono<Void> compress(DataBuffer joined, HttpHeaders headers, int level) {
+            byte[] identity = new byte[joined.readableByteCount()];
+            joined.read(identity);
+            DataBufferUtils.release(joined);
+
+            byte[] encoded = identity.length < minSize ? null : encode(headers.getETag(), identity, level);
+            if (encoded == null || encoded.length >= identity.length) {
+                counters.skipped.increment();
+                return write(identity);
+            }
+
+            String etag = headers.getETag();
+            if (etag != null && !etag.startsWith("W/")) {
+                headers.setETag("W/" + etag);
+            }
+            headers.set(HttpHeaders.CONTENT_ENCODING, coding.token);
+            return write(encoded);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // Streamed responses are passed through as they are
+            return super.writeAndFlushWith(body);
+        }
+
+        private byte[] encode(String etag, byte[] identity, int level) {
+            if (etag == null || etag.startsWith("W/")) {
+                counters.compressed.increment();
+                return coding.encode(identity, level);
+            }
+            CompressedKey key = new CompressedKey(routeId, path, etag, coding, level);
+            byte[] cached = compressedBodies.getIfPresent(key);
+            if (cached != null) {
+                counters.cached.increment();
+                return cached;
+            }
+            counters.compressed.increment();
+            byte[] encoded = coding.encode(identity, level);
+            compressedBodies.put(key, encoded);
+            return encoded;
+        }
+
+        private Mono<Void> write(byte[] bytes) {
+            getDelegate().getHeaders().setContentLength(bytes.length);
+            return getDelegate().writeWith(Mono.just(bufferFactory().wrap(bytes)));
+        }
+
+        private Integer levelFor(MediaType contentType) {
+            if (contentType == null) {
+                return null;
+            }
+            for (Map.Entry<MediaType, Integer> entry : levels.entrySet()) {
+                if (entry.getKey().includes(contentType)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+
+        private boolean isOk() {
+            return getDelegate().getStatusCode() == null || getDelegate().getStatusCode().value() == HttpStatus.OK.value();
+        }
+
+        private static boolean noTransform(HttpHeaders headers) {
+            String cacheControl = headers.getCacheControl();
+            return cacheControl != null && cacheControl.contains("no-transform");
+        }
+    }
+
+    /**
+     * Supported codings in order of preference when the client weighs them equally.
+     */
+    enum ContentCoding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String token;
+
+        ContentCoding(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Picks the coding with the highest q-value in {@code Accept-Encoding}, or null for identity.
+         */
+        static ContentCoding negotiate(List<String> acceptEncoding) {
+            if (acceptEncoding == null) {
+                return null;
+            }
+            ContentCoding best = null;
+            double bestQuality = 0;
+            double wildcardQuality = -1;
+            double[] explicit = new double[values().length];
+            Arrays.fill(explicit, -1);
+            for (String header : acceptEncoding) {
+                for (String element : header.split(",")) {
+                    String[] parts = element.trim().split(";");
+                    String name = parts[0].trim();
+                    double quality = quality(parts);
+                    if (name.equals("*")) {
+                        wildcardQuality = quality;
+                    }
+                    for (ContentCoding coding : values()) {
+                        if (coding.token.equalsIgnoreCase(name)) {
+                            explicit[coding.ordinal()] = quality;
+                        }
+                    }
+                }
+            }
+            for (ContentCoding coding : values()) {
+                double quality = explicit[coding.ordinal()] >= 0 ? explicit[coding.ordinal()] : wildcardQuality;
+                if (quality > bestQuality) {
+                    best = coding;
+                    bestQuality = quality;
+                }
+            }
+            return best;
+        }
+
+        private static double quality(String[] parts) {
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+            return 1;
+        }
+
+        byte[] encode(byte[] body, int level) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try {
+                if (this == GZIP) {
+                    try (GZIPOutputStream gzip = new LeveledGzipOutputStream(out, level)) {
+                        gzip.write(body);
+                    }
+                } else {
+                    Deflater deflater = new Deflater(level);
+                    try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+                        deflate.write(body);
+                    } finally {
+                        deflater.end();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+
+    private record CompressedKey(String routeId, String path, String etag, ContentCoding coding, int level) {
+    }
+
+    private class RouteCounters {
+        private final Counter compressed;
+        private final Counter cached;
+        private final Counter skipped;
+
+        RouteCounters(String routeId) {
+            this.compressed = counter(routeId, "compressed");
+            this.cached = counter(routeId, "cached");
+            this.skipped = counter(routeId, "skipped");
+        }
+
+        private Counter counter(String routeId, String result) {
+            return Counter.builder("gateway.compression.responses")
+                    .tag("route", routeId)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+
+    public static class Config {
+        private DataSize minSize = DataSize.ofKilobytes(1);
+        private DataSize maxSize = DataSize.ofMegabytes(1);
+        private List<String> levels = List.of(MediaType.APPLICATION_JSON_VALUE + "=" + Deflater.DEFAULT_COMPRESSION);
+
+        public DataSize getMinSize() {
+            return minSize;
+        }
+
+        public Config setMinSize(DataSize minSize) {
+            this.minSize = minSize;
+            return this;
+        }
+
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Largest body that is buffered to be compressed; larger ones are streamed uncompressed.
+         */
+        public Config setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public List<String> getLevels() {
+            return levels;
+        }
+
+        /**
+         * Compression level (1-9) per media type or range as {@code type=level}, e.g. {@code text/*=5};
+         * other types are not compressed.
+         */
+        public Config setLevels(List<String> levels) {
+            this.levels = levels;
+            return this;
+        }
+    }
+}
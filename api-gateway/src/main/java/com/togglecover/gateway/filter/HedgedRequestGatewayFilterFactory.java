@@ -0,0 +1,414 @@
+package com.togglecover.gateway.filter;
+
+import com.togglecover.gateway.loadbalancer.InstanceStats;
+import com.togglecover.gateway.loadbalancer.InstanceStatsRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.gateway.support.TimeoutException;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hedges idempotent requests on load-balanced routes: if the primary instance
+ * hasn't answered within the route's observed latency percentile, the same
+ * request goes to a second instance and whichever responds first wins while
+ * the other is cancelled. Hedges are paid for from a per-route retry budget.
+ *
+ * <p>Runs right after the load balancer filter so the primary instance is
+ * already chosen, and sends the request itself instead of the Netty routing
+ * filter. Like that filter it hands the winning response's connection to the
+ * Netty write response filter, which streams the body to the client, and
+ * applies the route's (or the global) response timeout to every attempt.
+ */
+@Component
+public class HedgedRequestGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<HedgedRequestGatewayFilterFactory.Config> {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgedRequestGatewayFilterFactory.class);
+
+    /** Exchange attribute holding the {@link ServiceInstance} that served the request when a hedge won. */
+    public static final String HEDGE_WINNER_ATTR = HedgedRequestGatewayFilterFactory.class.getName() + ".winner";
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    private final HttpClient httpClient;
+    private final HttpClientProperties httpClientProperties;
+    private final LoadBalancerClientFactory loadBalancerClientFactory;
+    private final InstanceStatsRegistry statsRegistry;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteHedgingState> routeStates = new ConcurrentHashMap<>();
+
+    public HedgedRequestGatewayFilterFactory(HttpClient httpClient,
+                                             HttpClientProperties httpClientProperties,
+                                             LoadBalancerClientFactory loadBalancerClientFactory,
+                                             InstanceStatsRegistry statsRegistry,
+                                             ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                                             MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.httpClient = httpClient;
+        this.httpClientProperties = httpClientProperties;
+        this.loadBalancerClientFactory = loadBalancerClientFactory;
+        this.statsRegistry = statsRegistry;
+        this.headersFiltersProvider = headersFiltersProvider;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        GatewayFilter filter = (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            Response<ServiceInstance> lbResponse =
+                    exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            URI requestUrl = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+
+            if (!IDEMPOTENT_METHODS.contains(exchange.getRequest().getMethod())
+                    || ServerWebExchangeUtils.isAlreadyRouted(exchange)
+                    || route == null || lbResponse == null || !lbResponse.hasServer() || requestUrl == null) {
+                return chain.filter(exchange);
+            }
+
+            ServerWebExchangeUtils.setAlreadyRouted(exchange);
+            RouteHedgingState state = routeStates.computeIfAbsent(route.getId(), id -> new RouteHedgingState(id, config));
+            if (!state.matches(config)) {
+                state.reconfigure(config);
+            }
+            state.retryBudget.deposit();
+
+            ServiceInstance primary = lbResponse.getServer();
+            HttpHeaders requestHeaders = HttpHeadersFilter.filterRequest(headersFiltersProvider.getIfAvailable(), exchange);
+            requestHeaders.remove(HttpHeaders.HOST);
+            Duration responseTimeout = responseTimeout(route);
+
+            long start = System.nanoTime();
+            // Only one response is used; one that arrives after the winner is closed unread
+            AtomicBoolean decided = new AtomicBoolean();
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Mono<UpstreamResponse> primaryAttempt = send(exchange, requestUrl, requestHeaders, responseTimeout, null)
+                    .doOnError(primaryError::set)
+                    .filter(upstream -> claim(decided, upstream));
+            Mono<UpstreamResponse> hedgeAttempt = Mono.delay(state.hedgeDelay(config))
+                    .then(Mono.defer(() -> hedge(exchange, requestUrl, requestHeaders, responseTimeout, primary, state)))
+                    .filter(upstream -> claim(decided, upstream));
+
+            return Mono.firstWithValue(primaryAttempt, hedgeAttempt)
+                    .doOnNext(upstream -> {
+                        state.latency.record(System.nanoTime() - start);
+                        if (upstream.hedgedTo() != null) {
+                            state.hedgesWon.increment();
+                            exchange.getAttributes().put(HEDGE_WINNER_ATTR, upstream.hedgedTo());
+                        }
+                    })
+                    // When the hedge completes empty (no alternative, no budget) the primary's failure is the real one
+                    .onErrorMap(NoSuchElementException.class,
+                            e -> primaryError.get() != null ? primaryError.get() : e)
+                    .flatMap(upstream -> {
+                        setResponse(exchange, upstream);
+                        return chain.filter(exchange);
+                    });
+        };
+        return new OrderedGatewayFilter(filter, ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1);
+    }
+
+    private Mono<UpstreamResponse> hedge(ServerWebExchange exchange, URI requestUrl, HttpHeaders requestHeaders,
+                                         Duration responseTimeout, ServiceInstance primary,
+                                         RouteHedgingState state) {
+        return pickAlternative(primary)
+                .flatMap(alternative -> {
+                    if (!state.retryBudget.tryWithdraw()) {
+                        state.budgetExhausted.increment();
+                        return Mono.empty();
+                    }
+                    state.hedgesIssued.increment();
+                    log.debug("Hedging {} to {} after primary {} was slow", requestUrl.getPath(),
+                            alternative.getUri(), primary.getUri());
+
+                    URI hedgeUrl = UriComponentsBuilder.fromUri(requestUrl)
+                            .scheme(alternative.isSecure() ? "https" : "http")
+                            .host(alternative.getHost())
+                            .port(alternative.getPort())
+                            .build(true)
+                            .toUri();
+
+                    // The load balancer lifecycle only sees the primary, so account for the hedge here
+                    // A losing hedge can be cancelled right after its response arrives, so settle exactly once
+                    statsRegistry.get(alternative).recordStart();
+                    long start = System.nanoTime();
+                    AtomicReference<HttpStatusCode> status = new AtomicReference<>();
+                    return send(exchange, hedgeUrl, requestHeaders, responseTimeout, alternative)
+                            .doOnNext(upstream -> status.set(upstream.status()))
+                            .doFinally(signal -> {
+                                HttpStatusCode received = status.get();
+                                if (signal == SignalType.ON_ERROR) {
+                                    statsRegistry.record(alternative, System.nanoTime() - start, true);
+                                } else if (received != null) {
+                                    statsRegistry.record(alternative, System.nanoTime() - start,
+                                            received.is5xxServerError());
+                                } else {
+                                    statsRegistry.record(alternative, -1, false);
+                                }
+                            });
+                });
+    }
+
+    private Mono<ServiceInstance> pickAlternative(ServiceInstance primary) {
+        ServiceInstanceListSupplier supplier = loadBalancerClientFactory
+                .getLazyProvider(primary.getServiceId(), ServiceInstanceListSupplier.class)
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        InstanceStats primaryStats = statsRegistry.get(primary);
+
+        return supplier.get()
+                .next()
+                .flatMap(instances -> {
+                    ServiceInstance best = null;
+                    double bestScore = Double.MAX_VALUE;
+                    long now = System.nanoTime();
+                    for (ServiceInstance instance : instances) {
+                        InstanceStats stats = statsRegistry.get(instance);
+                        if (stats == primaryStats || stats.isEjected(now)) {
+                            continue;
+                        }
+                        double score = stats.score(0);
+                        if (score < bestScore) {
+                            best = instance;
+                            bestScore = score;
+                        }
+                    }
+                    return Mono.justOrEmpty(best);
+                });
+    }
+
+    /**
+     * Sends the request and emits the upstream response once its status and
+     * headers are in; the body is left on the connection to be streamed.
+     */
+    private Mono<UpstreamResponse> send(ServerWebExchange exchange, URI url, HttpHeaders headers,
+                                        Duration responseTimeout, ServiceInstance hedgedTo) {
+        DefaultHttpHeaders nettyHeaders = new DefaultHttpHeaders();
+        headers.forEach(nettyHeaders::set);
+
+        Mono<UpstreamResponse> response = httpClient
+                .headers(h -> h.set(nettyHeaders))
+                .request(io.netty.handler.codec.http.HttpMethod.valueOf(exchange.getRequest().getMethod().name()))
+                .uri(url.toASCIIString())
+                .responseConnection((upstream, connection) ->
+                        Mono.just(new UpstreamResponse(upstream, connection, hedgedTo)))
+                .single();
+        if (responseTimeout == null) {
+            return response;
+        }
+        return response
+                .timeout(responseTimeout, Mono.error(
+                        new TimeoutException("Response took longer than timeout: " + responseTimeout)))
+                .onErrorMap(TimeoutException.class,
+                        e -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, e.getMessage(), e));
+    }
+
+    private static boolean claim(AtomicBoolean decided, UpstreamResponse upstream) {
+        if (decided.compareAndSet(false, true)) {
+            return true;
+        }
+        upstream.connection().dispose();
+        return false;
+    }
+
+    /**
+     * Sets the winner's status and headers and hands its connection over the
+     * way the Netty routing filter does, for the Netty write response filter
+     * to stream the body.
+     */
+    private void setResponse(ServerWebExchange exchange, UpstreamResponse upstream) {
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR, upstream.response());
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR, upstream.connection());
+
+        HttpHeaders headers = new HttpHeaders();
+        upstream.response().responseHeaders().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (StringUtils.hasLength(contentType)) {
+            exchange.getAttributes().put(ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR, contentType);
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatusCode.valueOf(upstream.response().status().code()));
+
+        HttpHeaders filtered = HttpHeadersFilter.filter(headersFiltersProvider.getIfAvailable(),
+                headers, exchange, HttpHeadersFilter.Type.RESPONSE);
+        if (!filtered.containsKey(HttpHeaders.TRANSFER_ENCODING) && filtered.containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            // Content-Length and Transfer-Encoding must not both be sent
+            response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        }
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES, filtered.keySet());
+        response.getHeaders().addAll(filtered);
+    }
+
+    /**
+     * The route's {@code response-timeout} metadata in millis (negative for
+     * none), otherwise the global {@code spring.cloud.gateway.httpclient.response-timeout}.
+     */
+    private Duration responseTimeout(Route route) {
+        Object timeout = route.getMetadata().get(RouteMetadataUtils.RESPONSE_TIMEOUT_ATTR);
+        if (timeout == null) {
+            return httpClientProperties.getResponseTimeout();
+        }
+        long millis = timeout instanceof Number number ? number.longValue() : Long.parseLong(timeout.toString());
+        return millis < 0 ? null : Duration.ofMillis(millis);
+    }
+
+    private record UpstreamResponse(HttpClientResponse response, Connection connection, ServiceInstance hedgedTo) {
+
+        HttpStatusCode status() {
+            return HttpStatusCode.valueOf(response.status().code());
+        }
+    }
+
+    private class RouteHedgingState {
+        // Replaced when a route reload changes their settings; everything else is read from Config per request
+        private volatile LatencyPercentileTracker latency;
+        private volatile RetryBudget retryBudget;
+        private volatile long minSamples;
+        private volatile double budgetRatio;
+        private volatile int budgetMaxTokens;
+        private final Counter hedgesIssued;
+        private final Counter hedgesWon;
+        private final Counter budgetExhausted;
+
+        RouteHedgingState(String routeId, Config config) {
+            reconfigure(config);
+            this.hedgesIssued = Counter.builder("gateway.hedge.issued").tag("route", routeId).register(meterRegistry);
+            this.hedgesWon = Counter.builder("gateway.hedge.won").tag("route", routeId).register(meterRegistry);
+            this.budgetExhausted = Counter.builder("gateway.hedge.budget-exhausted").tag("route", routeId)
+                    .register(meterRegistry);
+        }
+
+        boolean matches(Config config) {
+            return minSamples == config.getMinSamples()
+                    && budgetRatio == config.getBudgetRatio()
+                    && budgetMaxTokens == config.getBudgetMaxTokens();
+        }
+
+        synchronized void reconfigure(Config config) {
+            if (latency == null || minSamples != config.getMinSamples()) {
+                latency = new LatencyPercentileTracker(TimeUnit.SECONDS.toNanos(10), config.getMinSamples());
+            }
+            if (retryBudget == null || budgetRatio != config.getBudgetRatio()
+                    || budgetMaxTokens != config.getBudgetMaxTokens()) {
+                retryBudget = new RetryBudget(config.getBudgetRatio(), config.getBudgetMaxTokens());
+            }
+            minSamples = config.getMinSamples();
+            budgetRatio = config.getBudgetRatio();
+            budgetMaxTokens = config.getBudgetMaxTokens();
+        }
+
+        Duration hedgeDelay(Config config) {
+            long observed = latency.percentileNanos(config.getDelayPercentile());
+            long delay = observed < 0 ? config.getMaxDelay().toNanos() : observed;
+            delay = Math.max(config.getMinDelay().toNanos(), Math.min(config.getMaxDelay().toNanos(), delay));
+            return Duration.ofNanos(delay);
+        }
+    }
+
+    public static class Config {
+        private double delayPercentile = 95.0;
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration maxDelay = Duration.ofMillis(500);
+        private long minSamples = 50;
+        private double budgetRatio = 0.1;
+        private int budgetMaxTokens = 10;
+
+        public double getDelayPercentile() {
+            return delayPercentile;
+        }
+
+        public Config setDelayPercentile(double delayPercentile) {
+            this.delayPercentile = delayPercentile;
+            return this;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public Config setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public Config setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public long getMinSamples() {
+            return minSamples;
+        }
+
+        public Config setMinSamples(long minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public Config setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        public int getBudgetMaxTokens() {
+            return budgetMaxTokens;
+        }
+
+        public Config setBudgetMaxTokens(int budgetMaxTokens) {
+            this.budgetMaxTokens = budgetMaxTokens;
+            return this;
+        }
+    }
+}
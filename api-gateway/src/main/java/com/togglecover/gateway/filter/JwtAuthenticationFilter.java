@@ -1,10 +1,11 @@
 package com.togglecover.gateway.filter;
 
+import com.togglecover.gateway.security.JwtClaimsVerifier;
+import com.togglecover.gateway.security.PublicPathMatcher;
+import com.togglecover.gateway.security.TokenRevocationChecker;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -12,36 +13,34 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import javax.crypto.SecretKey;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
-
 @Component
 public class JwtAuthenticationFilter extends AbstractGatewayFilterFactory<JwtAuthenticationFilter.Config> {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    /** Before the filters that key on the verified claims (rate limit, cache). */
+    public static final int ORDER = RateLimitGatewayFilterFactory.ORDER - 1;
+
+    /** Exchange attribute holding the verified {@link Claims} for downstream filters. */
+    public static final String CLAIMS_ATTR = JwtAuthenticationFilter.class.getName() + ".claims";
 
-    private static final List<String> PUBLIC_ENDPOINTS = List.of(
-            "/api/v1/auth/register",
-            "/api/v1/auth/login",
-            "/api/v1/auth/token/validate",
-            "/actuator",
-            "/swagger-ui",
-            "/api-docs"
-    );
+    private final JwtClaimsVerifier claimsVerifier;
+    private final PublicPathMatcher publicPaths;
+    private final TokenRevocationChecker revocations;
 
-    public JwtAuthenticationFilter() {
+    public JwtAuthenticationFilter(JwtClaimsVerifier claimsVerifier, PublicPathMatcher publicPaths,
+                                   TokenRevocationChecker revocations) {
         super(Config.class);
+        this.claimsVerifier = claimsVerifier;
+        this.publicPaths = publicPaths;
+        this.revocations = revocations;
     }
 
     @Override
     public GatewayFilter apply(Config config) {
-        return (exchange, chain) -> {
+        GatewayFilter filter = (exchange, chain) -> {
             String path = exchange.getRequest().getURI().getPath();
 
             // Skip JWT validation for public endpoints
-            if (isPublicEndpoint(path)) {
+            if (publicPaths.isPublic(path)) {
                 return chain.filter(exchange);
             }
 
@@ -55,30 +54,37 @@ public class JwtAuthenticationFilter extends AbstractGatewayFilterFactory<JwtAut
             }
 
             String token = authHeader.substring(7);
+            Claims claims;
             try {
-                if (!isJwtValid(token)) {
-                    return onError(exchange, "Invalid token", HttpStatus.UNAUTHORIZED);
-                }
-
-                // Extract user info and add to headers
-                Claims claims = extractClaims(token);
-                exchange = exchange.mutate()
-                        .request(builder -> builder
-                                .header("X-User-Id", claims.get("userId", String.class))
-                                .header("X-User-Type", claims.get("userType", String.class))
-                                .header("X-User-Phone", claims.get("phone", String.class)))
-                        .build();
-
+                // Single parse; repeat tokens are served from the verified-claims cache
+                claims = claimsVerifier.verify(token);
             } catch (Exception e) {
                 return onError(exchange, "Token validation failed: " + e.getMessage(), HttpStatus.UNAUTHORIZED);
             }
+            if (claims == null) {
+                return onError(exchange, "Invalid token", HttpStatus.UNAUTHORIZED);
+            }
 
-            return chain.filter(exchange);
-        };
-    }
+            // Checked on every request, cached or not: the Bloom filter answers almost all without Redis
+            return revocations.isRevoked(claims).flatMap(revoked -> {
+                if (revoked) {
+                    return onError(exchange, "Token has been revoked", HttpStatus.UNAUTHORIZED);
+                }
+
+                // Add user info to headers, replacing anything the client sent
+                ServerWebExchange authenticated = exchange.mutate()
+                        .request(builder -> builder.headers(headers -> {
+                            headers.set("X-User-Id", claims.get("userId", String.class));
+                            headers.set("X-User-Type", claims.get("userType", String.class));
+                            headers.set("X-User-Phone", claims.get("phone", String.class));
+                        }))
+                        .build();
+                authenticated.getAttributes().put(CLAIMS_ATTR, claims);
 
-    private boolean isPublicEndpoint(String path) {
-        return PUBLIC_ENDPOINTS.stream().anyMatch(path::startsWith);
+                return chain.filter(authenticated);
+            });
+        };
+        return new OrderedGatewayFilter(filter, ORDER);
     }
 
     private Mono<Void> onError(ServerWebExchange exchange, String err, HttpStatus httpStatus) {
@@ -93,31 +99,6 @@ public class JwtAuthenticationFilter extends AbstractGatewayFilterFactory<JwtAut
         );
     }
 
-    private boolean isJwtValid(String token) {
-        try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-
-            // Check if token is expired
-            return claims.getExpiration().after(new java.util.Date());
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private Claims extractClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
     public static class Config {
         // Configuration properties
     }
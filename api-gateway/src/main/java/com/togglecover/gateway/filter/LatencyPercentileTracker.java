@@ -0,0 +1,58 @@
+package com.togglecover.gateway.filter;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Windowed latency percentile for picking hedge delays. Recording is wait-free;
+ * the percentile is recomputed at most once per window by whichever request
+ * notices it is stale, reusing the previous interval histogram.
+ */
+class LatencyPercentileTracker {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 2);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final long windowNanos;
+    private final long minSamples;
+
+    private Histogram recycled;
+    private volatile long cachedMicros = -1;
+    private volatile long nextRefreshNanos;
+
+    LatencyPercentileTracker(long windowNanos, long minSamples) {
+        this.windowNanos = windowNanos;
+        this.minSamples = minSamples;
+        this.nextRefreshNanos = System.nanoTime() + windowNanos;
+    }
+
+    void record(long latencyNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+    }
+
+    /**
+     * Returns the latency at the given percentile in nanoseconds, or -1 until enough samples exist.
+     */
+    long percentileNanos(double percentile) {
+        long now = System.nanoTime();
+        if (now - nextRefreshNanos >= 0 && refreshing.compareAndSet(false, true)) {
+            try {
+                Histogram interval = recorder.getIntervalHistogram(recycled);
+                if (interval.getTotalCount() >= minSamples) {
+                    cachedMicros = interval.getValueAtPercentile(percentile);
+                }
+                recycled = interval;
+                nextRefreshNanos = now + windowNanos;
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        long micros = cachedMicros;
+        return micros < 0 ? -1 : TimeUnit.MICROSECONDS.toNanos(micros);
+    }
+}
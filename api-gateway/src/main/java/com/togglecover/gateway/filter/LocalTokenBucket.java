@@ -0,0 +1,103 @@
+package com.togglecover.gateway.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free token bucket expressed as GCRA: the only mutable state is the
+ * theoretical arrival time, updated with CAS. Admissions are tallied in a
+ * striped LongAdder so the Redis sync can publish them without contending
+ * with the request path.
+ */
+class LocalTokenBucket {
+
+    private final String redisKey;
+    private final int replenishRate;
+    private final int burstCapacity;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+    private final LongAdder unsyncedAdmissions = new LongAdder();
+
+    private volatile long lastAccessNanos;
+    private volatile long lastSeenGlobalCount = -1;
+
+    LocalTokenBucket(String redisKey, int replenishRate, int burstCapacity, long nowNanos) {
+        this.redisKey = redisKey;
+        this.replenishRate = replenishRate;
+        this.burstCapacity = burstCapacity;
+        this.emissionIntervalNanos = 1_000_000_000L / Math.max(1, replenishRate);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(1, burstCapacity);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+        this.lastAccessNanos = nowNanos;
+    }
+
+    /**
+     * Returns the tokens left after admitting the request, or -1 if it must be rejected.
+     */
+    long tryAcquire(long nowNanos) {
+        lastAccessNanos = nowNanos;
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long debt = newTat - nowNanos;
+            if (debt > burstToleranceNanos) {
+                return -1;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                unsyncedAdmissions.increment();
+                return (burstToleranceNanos - debt) / emissionIntervalNanos;
+            }
+        }
+    }
+
+    /**
+     * Charges admissions made by other gateway replicas against this bucket,
+     * never draining it below empty.
+     */
+    void applyRemoteAdmissions(long count, long nowNanos) {
+        if (count <= 0) {
+            return;
+        }
+        long charge = count * emissionIntervalNanos;
+        theoreticalArrival.updateAndGet(tat ->
+                Math.min(Math.max(tat, nowNanos) + charge, nowNanos + burstToleranceNanos));
+    }
+
+    long drainUnsyncedAdmissions() {
+        return unsyncedAdmissions.sumThenReset();
+    }
+
+    void restoreUnsyncedAdmissions(long count) {
+        unsyncedAdmissions.add(count);
+    }
+
+    long nanosUntilFull(long nowNanos) {
+        return Math.max(0, theoreticalArrival.get() - nowNanos);
+    }
+
+    long nanosUntilNextToken(long nowNanos) {
+        long wait = theoreticalArrival.get() + emissionIntervalNanos - burstToleranceNanos - nowNanos;
+        return Math.max(0, wait);
+    }
+
+    boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - lastAccessNanos > idleNanos && nanosUntilFull(nowNanos) == 0;
+    }
+
+    boolean hasLimits(int replenishRate, int burstCapacity) {
+        return this.replenishRate == replenishRate && this.burstCapacity == burstCapacity;
+    }
+
+    String getRedisKey() {
+        return redisKey;
+    }
+
+    long getLastSeenGlobalCount() {
+        return lastSeenGlobalCount;
+    }
+
+    void setLastSeenGlobalCount(long lastSeenGlobalCount) {
+        this.lastSeenGlobalCount = lastSeenGlobalCount;
+    }
+}
@@ -0,0 +1,308 @@
+package com.togglecover.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.handler.ipfilter.IpFilterRuleType;
+import io.netty.handler.ipfilter.IpSubnetFilterRule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+@Component
+public class RateLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<RateLimitGatewayFilterFactory.Config> {
+
+    /** Before coalescing and the response cache, so shared and cached responses are rate limited too. */
+    public static final int ORDER = CompressionGatewayFilterFactory.ORDER - 1;
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimitGatewayFilterFactory.class);
+
+    // Adds this replica's admissions to the shared counter and returns the global total
+    private static final RedisScript<Long> SYNC_SCRIPT = RedisScript.of(
+            "local total = redis.call('INCRBY', KEYS[1], ARGV[1]) " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[2]) " +
+                    "return total",
+            Long.class);
+
+    private static final Pattern IP_LITERAL = Pattern.compile("[0-9a-fA-F.:]+");
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Duration syncInterval;
+    private final Duration idleTimeout;
+
+    // Bounded so a flood of distinct client keys can't grow the map without limit;
+    // an evicted bucket just starts full again on the client's next request.
+    private final Cache<String, LocalTokenBucket> buckets;
+
+    // X-Forwarded-For is only believed when the request comes from one of these
+    private final List<IpSubnetFilterRule> trustedProxies;
+
+    private Disposable syncTask;
+
+    public RateLimitGatewayFilterFactory(ReactiveStringRedisTemplate redisTemplate,
+                                         @Value("${gateway.rate-limit.sync-interval:500ms}") Duration syncInterval,
+                                         @Value("${gateway.rate-limit.idle-timeout:60s}") Duration idleTimeout,
+                                         @Value("${gateway.rate-limit.max-buckets:100000}") long maxBuckets,
+                                         @Value("${gateway.rate-limit.trusted-proxies:}") List<String> trustedProxies) {
+        super(Config.class);
+        this.redisTemplate = redisTemplate;
+        this.syncInterval = syncInterval;
+        this.idleTimeout = idleTimeout;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idleTimeout)
+                .build();
+        this.trustedProxies = trustedProxies.stream()
+                .filter(cidr -> !cidr.isBlank())
+                .map(RateLimitGatewayFilterFactory::parseCidr)
+                .toList();
+    }
+
+    @PostConstruct
+    public void startSync() {
+        syncTask = Flux.interval(syncInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> syncWithRedis())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stopSync() {
+        if (syncTask != null) {
+            syncTask.dispose();
+        }
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        GatewayFilter filter = (exchange, chain) -> {
+            String routeId = getRouteId(exchange);
+            String clientKey = resolveClientKey(exchange.getRequest(), config.getKeyResolver());
+            String bucketKey = routeId + ":" + clientKey;
+
+            long now = System.nanoTime();
+            LocalTokenBucket bucket = buckets.get(bucketKey, key -> newBucket(key, config, now));
+            if (!bucket.hasLimits(config.getReplenishRate(), config.getBurstCapacity())) {
+                // Limits were reloaded; the old bucket's state doesn't translate to the new rate
+                LocalTokenBucket stale = bucket;
+                bucket = buckets.asMap().compute(bucketKey, (key, current) ->
+                        current == null || current == stale ? newBucket(key, config, now) : current);
+            }
+
+            long remaining = bucket.tryAcquire(now);
+
+            HttpHeaders headers = exchange.getResponse().getHeaders();
+            headers.set("X-Rate-Limit-Limit", String.valueOf(config.getBurstCapacity()));
+            headers.set("X-Rate-Limit-Remaining", String.valueOf(Math.max(0, remaining)));
+            headers.set("X-Rate-Limit-Reset", String.valueOf(toSecondsCeil(bucket.nanosUntilFull(now))));
+
+            if (remaining < 0) {
+                long retryAfter = Math.max(1, toSecondsCeil(bucket.nanosUntilNextToken(now)));
+                headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+                log.debug("Rate limit exceeded for {} on route {}", clientKey, routeId);
+                return onRejected(exchange);
+            }
+
+            return chain.filter(exchange);
+        };
+        return new OrderedGatewayFilter(filter, ORDER);
+    }
+
+    private static LocalTokenBucket newBucket(String bucketKey, Config config, long now) {
+        return new LocalTokenBucket("gateway:ratelimit:" + bucketKey, config.getReplenishRate(),
+                config.getBurstCapacity(), now);
+    }
+
+    private Mono<Void> syncWithRedis() {
+        long now = System.nanoTime();
+        long idleNanos = idleTimeout.toNanos();
+
+        String ttlMillis = String.valueOf(idleTimeout.toMillis() * 2);
+        return Flux.fromIterable(List.copyOf(buckets.asMap().values()))
+                .filter(bucket -> !bucket.isIdle(now, idleNanos))
+                .flatMap(bucket -> syncBucket(bucket, ttlMillis), 16)
+                .then()
+                .onErrorResume(e -> {
+                    log.debug("Rate limit sync with Redis failed, continuing with local buckets: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> syncBucket(LocalTokenBucket bucket, String ttlMillis) {
+        long delta = bucket.drainUnsyncedAdmissions();
+        return redisTemplate.execute(SYNC_SCRIPT, List.of(bucket.getRedisKey()),
+                        List.of(String.valueOf(delta), ttlMillis))
+                .next()
+                .doOnNext(globalCount -> {
+                    long lastSeen = bucket.getLastSeenGlobalCount();
+                    if (lastSeen >= 0) {
+                        // Whatever the global counter grew by beyond our own delta was admitted elsewhere
+                        bucket.applyRemoteAdmissions(globalCount - lastSeen - delta, System.nanoTime());
+                    }
+                    bucket.setLastSeenGlobalCount(globalCount);
+                })
+                .doOnError(e -> bucket.restoreUnsyncedAdmissions(delta))
+                .then();
+    }
+
+    private String getRouteId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route != null ? route.getId() : "default";
+    }
+
+    private String resolveClientKey(ServerHttpRequest request, KeyResolver keyResolver) {
+        if (keyResolver == KeyResolver.USER) {
+            String userId = request.getHeaders().getFirst("X-User-Id");
+            if (userId != null && !userId.isEmpty()) {
+                return "user:" + userId;
+            }
+        }
+        return "ip:" + getClientIp(request);
+    }
+
+    /**
+     * The connecting address, unless that is a trusted proxy: then the
+     * X-Forwarded-For chain is walked from the right, skipping trusted proxies,
+     * and the first address not among them is the client. Entries further left
+     * were written by the client and could be anything.
+     */
+    private String getClientIp(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return "unknown";
+        }
+        String clientIp = remoteAddress.getAddress().getHostAddress();
+        if (!isTrustedProxy(remoteAddress)) {
+            return clientIp;
+        }
+
+        List<String> forwardedFor = request.getHeaders().getValuesAsList("X-Forwarded-For");
+        for (int i = forwardedFor.size() - 1; i >= 0; i--) {
+            InetSocketAddress hop = toAddress(forwardedFor.get(i));
+            if (hop == null) {
+                break;
+            }
+            clientIp = hop.getAddress().getHostAddress();
+            if (!isTrustedProxy(hop)) {
+                break;
+            }
+        }
+        return clientIp;
+    }
+
+    private boolean isTrustedProxy(InetSocketAddress address) {
+        for (IpSubnetFilterRule rule : trustedProxies) {
+            if (rule.matches(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Only IP literals, so a forged entry never triggers a DNS lookup
+    private static InetSocketAddress toAddress(String value) {
+        String ip = value.trim();
+        if (!IP_LITERAL.matcher(ip).matches()) {
+            return null;
+        }
+        try {
+            return new InetSocketAddress(InetAddress.getByName(ip), 0);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static IpSubnetFilterRule parseCidr(String cidr) {
+        String[] parts = cidr.trim().split("/", 2);
+        try {
+            InetAddress address = InetAddress.getByName(parts[0]);
+            int prefix = parts.length > 1 ? Integer.parseInt(parts[1])
+                    : address instanceof Inet4Address ? 32 : 128;
+            return new IpSubnetFilterRule(address, prefix, IpFilterRuleType.ACCEPT);
+        } catch (UnknownHostException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid trusted proxy CIDR: " + cidr, e);
+        }
+    }
+
+    private long toSecondsCeil(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private Mono<Void> onRejected(ServerWebExchange exchange) {
+        HttpStatus status = HttpStatus.TOO_MANY_REQUESTS;
+        exchange.getResponse().setStatusCode(status);
+        exchange.getResponse().getHeaders().add("Content-Type", "application/json");
+
+        String body = String.format("{\"error\": \"%s\", \"status\": %d}",
+                "Rate limit exceeded. Try again later.", status.value());
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        return exchange.getResponse().writeWith(
+                Mono.just(exchange.getResponse().bufferFactory().wrap(bytes))
+        );
+    }
+
+    public enum KeyResolver {
+        IP,
+        USER
+    }
+
+    public static class Config {
+        private int replenishRate = 10;
+        private int burstCapacity = 20;
+        private KeyResolver keyResolver = KeyResolver.IP;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public int getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(int burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public KeyResolver getKeyResolver() {
+            return keyResolver;
+        }
+
+        public Config setKeyResolver(KeyResolver keyResolver) {
+            this.keyResolver = keyResolver;
+            return this;
+        }
+    }
+}
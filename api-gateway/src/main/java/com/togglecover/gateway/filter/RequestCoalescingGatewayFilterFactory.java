@@ -0,0 +1,257 @@
+package com.togglecover.gateway.filter;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-flight for identical concurrent GETs: the first request for a given
+ * route, path, query and user goes upstream and every identical request that
+ * arrives while it is in flight waits for and replays its response.
+ *
+ * <p>The leader's body is copied once and shared read-only; bodies above the
+ * configured limit, streamed responses and responses setting cookies are not
+ * shared. If the leader fails, is cancelled or can't share, waiters fall back
+ * to making their own upstream call.
+ */
+@Component
+public class RequestCoalescingGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<RequestCoalescingGatewayFilterFactory.Config> {
+
+    /**
+     * Ahead of the response cache, so waiters replay what the leader's client got,
+     * and so of the response writer, which would otherwise bypass the sharing decorator.
+     */
+    public static final int ORDER = ResponseCacheGatewayFilterFactory.ORDER - 1;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<FlightKey, Flight> flights = new ConcurrentHashMap<>();
+    private final Map<String, RouteCounters> routeCounters = new ConcurrentHashMap<>();
+
+    public RequestCoalescingGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        GatewayFilter filter = (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            Claims claims = exchange.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTR);
+            if (route == null || claims == null || exchange.getRequest().getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+
+            RouteCounters counters = routeCounters.computeIfAbsent(route.getId(), RouteCounters::new);
+            HttpHeaders requestHeaders = exchange.getRequest().getHeaders();
+            FlightKey key = new FlightKey(route.getId(), claims.get("userId", String.class),
+                    exchange.getRequest().getURI().getRawPath(), exchange.getRequest().getURI().getRawQuery(),
+                    requestHeaders.getFirst(HttpHeaders.ACCEPT), requestHeaders.getFirst(HttpHeaders.IF_NONE_MATCH));
+
+            Flight flight = new Flight(config.getMaxBodySize().toBytes());
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing != null) {
+                counters.followers.increment();
+                // replay() completes empty too, so decide on the shared result before writing anything
+                return existing.result.asMono()
+                        .timeout(config.getMaxWait(), Mono.empty())
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMap(shared -> {
+                            if (shared.isPresent()) {
+                                return replay(exchange.getResponse(), shared.get());
+                            }
+                            counters.fallbacks.increment();
+                            return chain.filter(exchange);
+                        });
+            }
+
+            counters.leaders.increment();
+            ServerHttpResponse response = new SharingResponse(exchange.getResponse(), flight);
+            return chain.filter(exchange.mutate().response(response).build())
+                    .doOnSuccess(v -> {
+                        flights.remove(key, flight);
+                        flight.publish(exchange.getResponse());
+                    })
+                    .doOnError(e -> {
+                        flights.remove(key, flight);
+                        flight.abandon();
+                    })
+                    .doOnCancel(() -> {
+                        flights.remove(key, flight);
+                        flight.abandon();
+                    });
+        };
+        return new OrderedGatewayFilter(filter, ORDER);
+    }
+
+    private static Mono<Void> replay(ServerHttpResponse response, SharedResponse shared) {
+        response.setStatusCode(shared.status());
+        // Keep headers already set for this request (e.g. rate limits), take the rest from the leader
+        HttpHeaders headers = response.getHeaders();
+        shared.headers().forEach(headers::putIfAbsent);
+        if (shared.body().length == 0) {
+            return response.setComplete();
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(shared.body())));
+    }
+
+    private static class Flight {
+
+        private final Sinks.One<SharedResponse> result = Sinks.one();
+        private final long maxBodyBytes;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private volatile boolean shareable = true;
+        private volatile HttpHeaders writtenHeaders;
+
+        Flight(long maxBodyBytes) {
+            this.maxBodyBytes = maxBodyBytes;
+        }
+
+        /**
+         * Takes the headers as they are when the body is written, before outer
+         * filters (e.g. compression) rewrite them for the leader's own client.
+         */
+        void captureHeaders(HttpHeaders headers) {
+            HttpHeaders copy = new HttpHeaders();
+            copy.putAll(headers);
+            writtenHeaders = copy;
+        }
+
+        void capture(DataBuffer buffer) {
+            if (!shareable) {
+                return;
+            }
+            if (body.size() + buffer.readableByteCount() > maxBodyBytes) {
+                shareable = false;
+                return;
+            }
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    ByteBuffer chunk = iterator.next();
+                    byte[] bytes = new byte[chunk.remaining()];
+                    chunk.get(bytes);
+                    body.writeBytes(bytes);
+                }
+            }
+        }
+
+        void publish(ServerHttpResponse response) {
+            HttpStatusCode status = response.getStatusCode();
+            if (!shareable || status == null || response.getHeaders().containsKey(HttpHeaders.SET_COOKIE)) {
+                abandon();
+                return;
+            }
+            byte[] bytes = body.toByteArray();
+            HttpHeaders headers = new HttpHeaders();
+            headers.putAll(writtenHeaders != null ? writtenHeaders : response.getHeaders());
+            headers.remove(HttpHeaders.TRANSFER_ENCODING);
+            if (bytes.length > 0) {
+                headers.setContentLength(bytes.length);
+            }
+            result.tryEmitValue(new SharedResponse(status, HttpHeaders.readOnlyHttpHeaders(headers), bytes));
+        }
+
+        void abandon() {
+            shareable = false;
+            result.tryEmitEmpty();
+        }
+    }
+
+    private static class SharingResponse extends ServerHttpResponseDecorator {
+
+        private final Flight flight;
+
+        SharingResponse(ServerHttpResponse delegate, Flight flight) {
+            super(delegate);
+            this.flight = flight;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            flight.captureHeaders(getDelegate().getHeaders());
+            return super.writeWith(Flux.from(body).doOnNext(flight::capture));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // Streamed responses are never shared
+            flight.shareable = false;
+            return super.writeAndFlushWith(body);
+        }
+    }
+
+    private record FlightKey(String routeId, String userId, String path, String query, String accept,
+                             String ifNoneMatch) {
+    }
+
+    private record SharedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body) {
+    }
+
+    private class RouteCounters {
+        private final Counter leaders;
+        private final Counter followers;
+        private final Counter fallbacks;
+
+        RouteCounters(String routeId) {
+            this.leaders = counter(routeId, "leader");
+            this.followers = counter(routeId, "follower");
+            this.fallbacks = counter(routeId, "fallback");
+        }
+
+        private Counter counter(String routeId, String role) {
+            return Counter.builder("gateway.coalescing.requests")
+                    .tag("route", routeId)
+                    .tag("role", role)
+                    .register(meterRegistry);
+        }
+    }
+
+    public static class Config {
+        private DataSize maxBodySize = DataSize.ofKilobytes(256);
+        private Duration maxWait = Duration.ofSeconds(5);
+
+        public DataSize getMaxBodySize() {
+            return maxBodySize;
+        }
+
+        public Config setMaxBodySize(DataSize maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public Config setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.togglecover.gateway.filter;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code DELETE /actuator/responsecache} clears the gateway response cache;
+ * {@code DELETE /actuator/responsecache/{userId}} evicts one user's entries.
+ * Served on the internal management port only, never on the proxy port.
+ */
+@Component
+@Endpoint(id = "responsecache")
+public class ResponseCacheEndpoint {
+
+    private final ResponseCacheGatewayFilterFactory responseCache;
+
+    public ResponseCacheEndpoint(ResponseCacheGatewayFilterFactory responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @DeleteOperation
+    public void invalidateAll() {
+        responseCache.invalidateAll();
+    }
+
+    @DeleteOperation
+    public void invalidateUser(@Selector String userId) {
+        responseCache.invalidateUser(userId);
+    }
+}
@@ -0,0 +1,382 @@
+package com.togglecover.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-user response cache for GET routes. Entries are served directly while
+ * fresh; once stale they are revalidated with {@code If-None-Match} so an
+ * unchanged resource costs the backend a 304 instead of a full body. Clients
+ * presenting a matching ETag get a 304 from the gateway either way.
+ *
+ * <p>Entries are keyed by route, path, query and the verified user id, and a
+ * successful write by a user evicts everything cached for or about that user.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    /**
+     * Ahead of {@link NettyWriteResponseFilter}, which writes the upstream body to
+     * the response it was given; at a later order it would bypass the capturing decorator.
+     */
+    public static final int ORDER = NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+
+    // Only representation headers are replayed; per-request headers such as
+    // the rate-limit ones are already on the response when the cache answers
+    private static final List<String> CACHED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE,
+            HttpHeaders.CONTENT_LANGUAGE,
+            HttpHeaders.CACHE_CONTROL,
+            HttpHeaders.ETAG,
+            HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.VARY
+    );
+
+    private static final Set<HttpMethod> WRITE_METHODS =
+            Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH, HttpMethod.DELETE);
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<CacheKey, CachedResponse> cache;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, RouteCounters> routeCounters = new ConcurrentHashMap<>();
+
+    public ResponseCacheGatewayFilterFactory(@Value("${gateway.response-cache.max-size:32MB}") DataSize maxSize,
+                                             @Value("${gateway.response-cache.max-stale:10m}") Duration maxStale,
+                                             MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((CacheKey key, CachedResponse value) -> value.body().length + ENTRY_OVERHEAD_BYTES)
+                .expireAfterWrite(maxStale)
+                .recordStats()
+                .build();
+        this.meterRegistry = meterRegistry;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.response.cache");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        List<PathPattern> cacheablePaths = config.getPaths().stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+
+        GatewayFilter filter = (exchange, chain) -> {
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            String userId = userId(exchange);
+            HttpMethod method = exchange.getRequest().getMethod();
+            if (route == null || userId == null) {
+                return chain.filter(exchange);
+            }
+
+            if (WRITE_METHODS.contains(method)) {
+                // Writes go through untouched and invalidate the user's entries once they succeed
+                return chain.filter(exchange)
+                        .doOnSuccess(v -> {
+                            HttpStatus status = HttpStatus.resolve(statusValue(exchange.getResponse()));
+                            if (status != null && status.is2xxSuccessful()) {
+                                invalidateUser(userId);
+                            }
+                        });
+            }
+            if (method != HttpMethod.GET || !isCacheable(cacheablePaths, exchange)) {
+                return chain.filter(exchange);
+            }
+
+            RouteCounters counters = routeCounters.computeIfAbsent(route.getId(), RouteCounters::new);
+            CacheKey key = new CacheKey(route.getId(), userId, exchange.getRequest().getURI().getRawPath(),
+                    exchange.getRequest().getURI().getRawQuery());
+            String clientEtag = exchange.getRequest().getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+
+            CachedResponse cached = cache.getIfPresent(key);
+            long now = System.nanoTime();
+            if (cached != null && now - cached.storedAtNanos() < config.getTtl().toNanos()) {
+                counters.hits.increment();
+                return writeCached(exchange.getResponse(), cached, clientEtag);
+            }
+
+            // The backend sees our validator, not the client's, so a 304 always refers to the cached entry
+            ServerWebExchange upstreamExchange = exchange.mutate()
+                    .request(builder -> builder.headers(headers -> {
+                        headers.remove(HttpHeaders.IF_NONE_MATCH);
+                        headers.remove(HttpHeaders.IF_MODIFIED_SINCE);
+                        if (cached != null && cached.etag() != null) {
+                            headers.setIfNoneMatch(cached.etag());
+                        }
+                    }))
+                    .response(new CachingResponse(exchange.getResponse(), key, cached, clientEtag, config, counters))
+                    .build();
+            return chain.filter(upstreamExchange);
+        };
+        return new OrderedGatewayFilter(filter, ORDER);
+    }
+
+    /**
+     * Evicts every entry cached for the user or whose path refers to the user.
+     */
+    public void invalidateUser(String userId) {
+        cache.asMap().keySet().removeIf(key -> key.userId().equals(userId) || key.refersTo(userId));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static boolean isCacheable(List<PathPattern> cacheablePaths, ServerWebExchange exchange) {
+        if (cacheablePaths.isEmpty()) {
+            return true;
+        }
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        for (PathPattern pattern : cacheablePaths) {
+            if (pattern.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String userId(ServerWebExchange exchange) {
+        Claims claims = exchange.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTR);
+        return claims == null ? null : claims.get("userId", String.class);
+    }
+
+    private static int statusValue(ServerHttpResponse response) {
+        return response.getStatusCode() == null ? 200 : response.getStatusCode().value();
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Mono<Void> writeCached(ServerHttpResponse response, CachedResponse cached, String clientEtag) {
+        HttpHeaders headers = response.getHeaders();
+        cached.headers().forEach(headers::put);
+
+        if (etagMatches(clientEtag, cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            headers.remove(HttpHeaders.CONTENT_TYPE);
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final CacheKey key;
+        private final CachedResponse stale;
+        private final String clientEtag;
+        private final Config config;
+        private final RouteCounters counters;
+
+        CachingResponse(ServerHttpResponse delegate, CacheKey key, CachedResponse stale, String clientEtag,
+                        Config config, RouteCounters counters) {
+            super(delegate);
+            this.key = key;
+            this.stale = stale;
+            this.clientEtag = clientEtag;
+            this.config = config;
+            this.counters = counters;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            int status = statusValue(getDelegate());
+
+            if (status == HttpStatus.NOT_MODIFIED.value() && stale != null) {
+                // Still valid upstream: restart the entry's freshness and answer from the cache
+                counters.revalidated.increment();
+                CachedResponse refreshed = stale.refreshed(System.nanoTime());
+                cache.put(key, refreshed);
+                return Flux.from(body).doOnNext(DataBufferUtils::release)
+                        .then(Mono.defer(() -> writeCached(getDelegate(), refreshed, clientEtag)));
+            }
+
+            counters.misses.increment();
+            HttpHeaders upstreamHeaders = getDelegate().getHeaders();
+            if (status != HttpStatus.OK.value() || upstreamHeaders.containsKey(HttpHeaders.SET_COOKIE)) {
+                cache.invalidate(key);
+                return super.writeWith(body);
+            }
+
+            long maxEntryBytes = config.getMaxEntrySize().toBytes();
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            boolean[] oversized = {false};
+
+            Flux<? extends DataBuffer> tapped = Flux.from(body)
+                    .doOnNext(buffer -> {
+                        if (oversized[0]) {
+                            return;
+                        }
+                        if (copy.size() + buffer.readableByteCount() > maxEntryBytes) {
+                            oversized[0] = true;
+                            return;
+                        }
+                        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                            while (iterator.hasNext()) {
+                                ByteBuffer chunk = iterator.next();
+                                byte[] bytes = new byte[chunk.remaining()];
+                                chunk.get(bytes);
+                                copy.writeBytes(bytes);
+                            }
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (!oversized[0]) {
+                            cache.put(key, CachedResponse.of(upstreamHeaders, copy.toByteArray(), System.nanoTime()));
+                        }
+                    });
+
+            if (etagMatches(clientEtag, upstreamHeaders.getETag())) {
+                // Fill the cache from the body but only send the client a 304
+                setStatusCode(HttpStatus.NOT_MODIFIED);
+                upstreamHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+                upstreamHeaders.remove(HttpHeaders.CONTENT_TYPE);
+                return tapped.doOnNext(DataBufferUtils::release)
+                        .then(Mono.defer(getDelegate()::setComplete));
+            }
+            return super.writeWith(tapped);
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // Streaming responses are never cached
+            return super.writeAndFlushWith(body);
+        }
+    }
+
+    private record CacheKey(String routeId, String userId, String path, String query) {
+
+        boolean refersTo(String userId) {
+            for (String segment : path.split("/")) {
+                if (segment.equals(userId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record CachedResponse(Map<String, List<String>> headers, byte[] body, String etag, long storedAtNanos) {
+
+        static CachedResponse of(HttpHeaders upstream, byte[] body, long now) {
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+            for (String name : CACHED_HEADERS) {
+                List<String> values = upstream.get(name);
+                if (values != null) {
+                    headers.put(name, List.copyOf(values));
+                }
+            }
+            return new CachedResponse(headers, body, upstream.getETag(), now);
+        }
+
+        CachedResponse refreshed(long now) {
+            return new CachedResponse(headers, body, etag, now);
+        }
+    }
+
+    private class RouteCounters {
+        private final Counter hits;
+        private final Counter revalidated;
+        private final Counter misses;
+
+        RouteCounters(String routeId) {
+            this.hits = counter(routeId, "hit");
+            this.revalidated = counter(routeId, "revalidated");
+            this.misses = counter(routeId, "miss");
+        }
+
+        private Counter counter(String routeId, String result) {
+            return Counter.builder("gateway.response.cache.requests")
+                    .tag("route", routeId)
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+
+    public static class Config {
+        private Duration ttl = Duration.ofSeconds(30);
+        private DataSize maxEntrySize = DataSize.ofKilobytes(256);
+        private List<String> paths = List.of();
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public Config setTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        public DataSize getMaxEntrySize() {
+            return maxEntrySize;
+        }
+
+        public Config setMaxEntrySize(DataSize maxEntrySize) {
+            this.maxEntrySize = maxEntrySize;
+            return this;
+        }
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        /**
+         * Path patterns eligible for caching; empty means every GET on the route.
+         */
+        public Config setPaths(List<String> paths) {
+            this.paths = paths;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.togglecover.gateway.filter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that caps extra upstream attempts to a fraction of primary
+ * traffic: every primary request deposits {@code ratio} tokens and every
+ * hedge or retry withdraws one. During an outage primary traffic doesn't
+ * earn enough tokens to multiply the load.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxTokens) {
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.maxBalance = maxTokens * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    void deposit() {
+        balance.updateAndGet(current -> Math.min(maxBalance, current + depositPerRequest));
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.togglecover.gateway.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP-Vegas style concurrency limit. The limit grows while the observed RTT
+ * stays close to the no-load RTT and shrinks once requests start queueing
+ * (RTT inflation) or failing. Lower priority classes may only use a share of
+ * the limit, so they are shed first.
+ */
+class VegasConcurrencyLimiter {
+
+    private static final long NO_SAMPLE = Long.MAX_VALUE;
+
+    private volatile int minLimit;
+    private volatile int maxLimit;
+    private volatile int probeInterval;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final AtomicLong noLoadRttNanos = new AtomicLong(NO_SAMPLE);
+    private final AtomicInteger samplesSinceProbe = new AtomicInteger();
+
+    VegasConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int probeInterval) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeInterval = probeInterval;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    boolean hasBounds(int minLimit, int maxLimit, int probeInterval) {
+        return this.minLimit == minLimit && this.maxLimit == maxLimit && this.probeInterval == probeInterval;
+    }
+
+    /**
+     * Applies new bounds without forgetting the learned limit or RTT baseline.
+     */
+    synchronized void setBounds(int minLimit, int maxLimit, int probeInterval) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.probeInterval = probeInterval;
+        limitBits.updateAndGet(bits -> Double.doubleToRawLongBits(
+                Math.max(minLimit, Math.min(maxLimit, Double.longBitsToDouble(bits)))));
+    }
+
+    boolean tryAcquire(Priority priority) {
+        double allowed = Math.max(1, getLimit() * priority.getLimitShare());
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Releases the permit and feeds the outcome back into the limit.
+     */
+    void release(long rttNanos, boolean dropped) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+
+        // Periodically forget the baseline so a permanently slower backend is re-learned
+        if (samplesSinceProbe.incrementAndGet() >= probeInterval) {
+            samplesSinceProbe.set(0);
+            noLoadRttNanos.set(NO_SAMPLE);
+        }
+        long noLoadRtt = noLoadRttNanos.accumulateAndGet(rttNanos, Math::min);
+
+        limitBits.updateAndGet(bits -> {
+            double limit = Double.longBitsToDouble(bits);
+            double next = nextLimit(limit, rttNanos, noLoadRtt, inFlightAtCompletion, dropped);
+            return Double.doubleToRawLongBits(Math.max(minLimit, Math.min(maxLimit, next)));
+        });
+    }
+
+    private double nextLimit(double limit, long rtt, long noLoadRtt, int inFlightAtCompletion, boolean dropped) {
+        if (dropped) {
+            return limit * 0.9;
+        }
+
+        // Don't grow the limit when the route isn't using it
+        if (inFlightAtCompletion * 2 < limit) {
+            return limit;
+        }
+
+        double log = Math.max(1, Math.log10(limit));
+        double queueSize = Math.ceil(limit * (1 - (double) noLoadRtt / Math.max(rtt, 1)));
+        double alpha = 3 * log;
+        double beta = 6 * log;
+
+        if (queueSize <= log) {
+            return limit + beta;
+        } else if (queueSize < alpha) {
+            return limit + log;
+        } else if (queueSize > beta) {
+            return limit - log;
+        }
+        return limit;
+    }
+
+    double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getNoLoadRttNanos() {
+        long rtt = noLoadRttNanos.get();
+        return rtt == NO_SAMPLE ? 0 : rtt;
+    }
+
+    enum Priority {
+        CRITICAL(1.0),
+        NORMAL(0.9),
+        LOW(0.75);
+
+        private final double limitShare;
+
+        Priority(double limitShare) {
+            this.limitShare = limitShare;
+        }
+
+        double getLimitShare() {
+            return limitShare;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.togglecover.gateway.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live routing statistics for one upstream instance. All fields are updated
+ * lock-free from the load balancer lifecycle callbacks.
+ */
+public class InstanceStats {
+
+    private final String serviceId;
+    private final String instanceId;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger ejections = new AtomicInteger();
+
+    // Double stored as raw long bits so the EWMA can be updated with CAS
+    private final AtomicLong ewmaLatencyBits = new AtomicLong(Double.doubleToRawLongBits(-1));
+
+    private volatile long ejectedUntilNanos;
+
+    InstanceStats(String serviceId, String instanceId) {
+        this.serviceId = serviceId;
+        this.instanceId = instanceId;
+    }
+
+    public void recordStart() {
+        inFlight.incrementAndGet();
+    }
+
+    void recordLatency(double latencyMillis, double alpha) {
+        ewmaLatencyBits.updateAndGet(bits -> {
+            double current = Double.longBitsToDouble(bits);
+            double next = current < 0 ? latencyMillis : current + alpha * (latencyMillis - current);
+            return Double.doubleToRawLongBits(next);
+        });
+    }
+
+    void recordEnd() {
+        inFlight.decrementAndGet();
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Returns true if this failure crossed the threshold and the instance was ejected.
+     */
+    boolean recordFailure(int threshold, long baseEjectionNanos, int maxEjectionMultiplier, long nowNanos) {
+        if (consecutiveFailures.incrementAndGet() < threshold || isEjected(nowNanos)) {
+            return false;
+        }
+        consecutiveFailures.set(0);
+        int multiplier = Math.min(ejections.incrementAndGet(), maxEjectionMultiplier);
+        ejectedUntilNanos = nowNanos + baseEjectionNanos * multiplier;
+        return true;
+    }
+
+    public boolean isEjected(long nowNanos) {
+        return ejectedUntilNanos - nowNanos > 0;
+    }
+
+    /**
+     * Lower is better: expected latency scaled by the queue the request would join.
+     */
+    public double score(double defaultLatencyMillis) {
+        double ewma = getEwmaLatencyMillis();
+        double latency = ewma < 0 ? defaultLatencyMillis : ewma;
+        return latency * (inFlight.get() + 1);
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public double getEwmaLatencyMillis() {
+        return Double.longBitsToDouble(ewmaLatencyBits.get());
+    }
+
+    public int getEjections() {
+        return ejections.get();
+    }
+
+    public boolean isEjected() {
+        return isEjected(System.nanoTime());
+    }
+}
@@ -0,0 +1,235 @@
+package com.togglecover.gateway.loadbalancer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks per-instance latency, in-flight requests and outlier ejection for every
+ * lb:// route. Registered as a {@link LoadBalancerLifecycle} so the gateway's
+ * load balancer filter reports the start and outcome of each proxied request.
+ */
+@Component
+public class InstanceStatsRegistry implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceStatsRegistry.class);
+    private static final String METER_PREFIX = "gateway.loadbalancer.";
+
+    private final ConcurrentHashMap<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+    // Start times keyed by the (identity of the) load balancer request; the request's
+    // own attributes are read-only for WebClient calls. Weak keys drop abandoned requests.
+    private final Cache<Request<?>, Long> startNanos = Caffeine.newBuilder().weakKeys().build();
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gateway.loadbalancer.ewma-alpha:0.3}")
+    private double ewmaAlpha;
+
+    @Value("${gateway.loadbalancer.ejection.consecutive-failures:5}")
+    private int consecutiveFailureThreshold;
+
+    @Value("${gateway.loadbalancer.ejection.base-duration:30s}")
+    private Duration baseEjectionDuration;
+
+    @Value("${gateway.loadbalancer.ejection.max-multiplier:5}")
+    private int maxEjectionMultiplier;
+
+    public InstanceStatsRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public InstanceStats get(ServiceInstance instance) {
+        String serviceId = instance.getServiceId();
+        String instanceId = instanceId(instance);
+        return stats.computeIfAbsent(key(serviceId, instanceId), key -> register(serviceId, instanceId));
+    }
+
+    /**
+     * In-flight requests to the instance, without registering it: 0 once it has departed.
+     */
+    public int getInFlight(ServiceInstance instance) {
+        InstanceStats instanceStats = stats.get(key(instance.getServiceId(), instanceId(instance)));
+        return instanceStats != null ? instanceStats.getInFlight() : 0;
+    }
+
+    /**
+     * Whether the instance is still tracked, i.e. has been chosen and not retained out since.
+     */
+    public boolean isTracked(String serviceId, String instanceId) {
+        return stats.containsKey(key(serviceId, instanceId));
+    }
+
+    public Collection<InstanceStats> getAll() {
+        return stats.values();
+    }
+
+    /**
+     * Drops the stats and meters of instances of the listed services that are no
+     * longer among {@code instances}, so instances that come and go (rolling
+     * deploys, autoscaling) don't pile up. An empty list is ignored rather than
+     * taken to mean every instance is gone.
+     */
+    public void retainInstances(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return;
+        }
+        Set<String> serviceIds = new HashSet<>();
+        Set<String> current = new HashSet<>();
+        for (ServiceInstance instance : instances) {
+            serviceIds.add(instance.getServiceId());
+            current.add(key(instance.getServiceId(), instanceId(instance)));
+        }
+
+        stats.entrySet().removeIf(entry -> {
+            InstanceStats instanceStats = entry.getValue();
+            if (!serviceIds.contains(instanceStats.getServiceId()) || current.contains(entry.getKey())) {
+                return false;
+            }
+            removeMeters(instanceStats.getServiceId(), instanceStats.getInstanceId());
+            log.info("Dropped stats for departed {} instance {}",
+                    instanceStats.getServiceId(), instanceStats.getInstanceId());
+            return true;
+        });
+    }
+
+    // LoadBalancerLifecycle declares this with raw types, so the override has to as well
+    @Override
+    @SuppressWarnings("rawtypes")
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return supportsTypes(requestContextClass, responseClass, serverTypeClass);
+    }
+
+    private static boolean supportsTypes(Class<?> requestContextClass, Class<?> responseClass,
+                                         Class<?> serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (!lbResponse.hasServer()) {
+            return;
+        }
+        startNanos.put(request, System.nanoTime());
+        get(lbResponse.getServer()).recordStart();
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (completionContext.status() == CompletionContext.Status.DISCARD
+                || lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+
+        ServiceInstance instance = lbResponse.getServer();
+        Long start = startNanos.asMap().remove(completionContext.getLoadBalancerRequest());
+        boolean failed = completionContext.status() == CompletionContext.Status.FAILED
+                || isServerError(completionContext.getClientResponse());
+        long elapsedNanos = start != null ? System.nanoTime() - start : -1;
+
+        record(instance, elapsedNanos, failed);
+    }
+
+    /**
+     * Records a request that was proxied outside the gateway's load balancer filter.
+     * Pass a negative elapsed time when the request never reached the instance.
+     */
+    public void record(ServiceInstance instance, long elapsedNanos, boolean failed) {
+        // Not get(): a request finishing after its instance left must not bring the stats back
+        InstanceStats instanceStats = stats.get(key(instance.getServiceId(), instanceId(instance)));
+        if (instanceStats == null) {
+            return;
+        }
+        instanceStats.recordEnd();
+        if (elapsedNanos >= 0) {
+            instanceStats.recordLatency(elapsedNanos / 1_000_000.0, ewmaAlpha);
+        }
+
+        if (!failed) {
+            instanceStats.recordSuccess();
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (instanceStats.recordFailure(consecutiveFailureThreshold, baseEjectionDuration.toNanos(),
+                maxEjectionMultiplier, now)) {
+            log.warn("Ejecting {} instance {} after {} consecutive failures",
+                    instanceStats.getServiceId(), instanceStats.getInstanceId(), consecutiveFailureThreshold);
+            Counter.builder("gateway.loadbalancer.ejections")
+                    .tag("service", instanceStats.getServiceId())
+                    .tag("instance", instanceStats.getInstanceId())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private boolean isServerError(ResponseData responseData) {
+        return responseData != null && responseData.getHttpStatus() != null
+                && responseData.getHttpStatus().is5xxServerError();
+    }
+
+    private InstanceStats register(String serviceId, String instanceId) {
+        InstanceStats instanceStats = new InstanceStats(serviceId, instanceId);
+        Gauge.builder("gateway.loadbalancer.latency.ewma", instanceStats, InstanceStats::getEwmaLatencyMillis)
+                .tag("service", serviceId)
+                .tag("instance", instanceId)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("gateway.loadbalancer.in-flight", instanceStats, InstanceStats::getInFlight)
+                .tag("service", serviceId)
+                .tag("instance", instanceId)
+                .register(meterRegistry);
+        Gauge.builder("gateway.loadbalancer.ejected", instanceStats, s -> s.isEjected() ? 1 : 0)
+                .tag("service", serviceId)
+                .tag("instance", instanceId)
+                .register(meterRegistry);
+        return instanceStats;
+    }
+
+    // Every per-instance meter here and in LatencyAwareLoadBalancer is tagged service and instance
+    private void removeMeters(String serviceId, String instanceId) {
+        for (Meter meter : Search.in(meterRegistry).tags("service", serviceId, "instance", instanceId).meters()) {
+            if (meter.getId().getName().startsWith(METER_PREFIX)) {
+                meterRegistry.remove(meter);
+            }
+        }
+    }
+
+    private static String key(String serviceId, String instanceId) {
+        return serviceId + ":" + instanceId;
+    }
+
+    public static String instanceId(ServiceInstance instance) {
+        return instance.getInstanceId() != null
+                ? instance.getInstanceId()
+                : instance.getHost() + ":" + instance.getPort();
+    }
+}
@@ -0,0 +1,188 @@
+package com.togglecover.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power-of-two-choices over the non-ejected instances, scored by latency EWMA
+ * times in-flight requests. Falls back to the full list when every instance
+ * is ejected so a service never becomes unroutable.
+ *
+ * <p>When affinity is enabled for the service, requests carrying {@code X-User-Id}
+ * are instead routed by rendezvous hashing on the user id, spilling over to the
+ * next-ranked instance when the preferred one is above the bounded-load cap.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final String serviceId;
+    private final InstanceStatsRegistry statsRegistry;
+    private final MeterRegistry meterRegistry;
+    private final double defaultLatencyMillis;
+    private final boolean affinityEnabled;
+    private final double affinityLoadFactor;
+
+    // Suppliers hand out the same list until the instances change
+    private volatile List<ServiceInstance> lastInstances;
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider,
+                                    String serviceId,
+                                    InstanceStatsRegistry statsRegistry,
+                                    MeterRegistry meterRegistry,
+                                    double defaultLatencyMillis,
+                                    boolean affinityEnabled,
+                                    double affinityLoadFactor) {
+        this.supplierProvider = supplierProvider;
+        this.serviceId = serviceId;
+        this.statsRegistry = statsRegistry;
+        this.meterRegistry = meterRegistry;
+        this.defaultLatencyMillis = defaultLatencyMillis;
+        this.affinityEnabled = affinityEnabled;
+        this.affinityLoadFactor = affinityLoadFactor;
+    }
+
+    // ReactorLoadBalancer declares this with a raw Request, so the override has to as well
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        return chooseInstance(request);
+    }
+
+    private Mono<Response<ServiceInstance>> chooseInstance(Request<?> request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        String affinityKey = affinityEnabled ? getAffinityKey(request) : null;
+        return supplier.get(request)
+                .next()
+                .map(instances -> choose(instances, affinityKey));
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances, String affinityKey) {
+        if (instances.isEmpty()) {
+            recordDecision("none", "no-instances");
+            return new EmptyResponse();
+        }
+        if (instances != lastInstances) {
+            lastInstances = instances;
+            statsRegistry.retainInstances(instances);
+        }
+
+        List<ServiceInstance> candidates = healthyInstances(instances);
+        String reason = candidates.size() == instances.size() ? "p2c" : "p2c-ejected-skipped";
+        if (candidates.isEmpty()) {
+            candidates = instances;
+            reason = "all-ejected";
+        }
+
+        ServiceInstance chosen;
+        if (affinityKey != null) {
+            chosen = rendezvousWithBoundedLoad(candidates, affinityKey);
+            reason = chosen == null ? "affinity-overloaded" : "affinity";
+            if (chosen == null) {
+                chosen = powerOfTwoChoices(candidates);
+            }
+        } else {
+            chosen = powerOfTwoChoices(candidates);
+        }
+
+        recordDecision(InstanceStatsRegistry.instanceId(chosen), reason);
+        return new DefaultResponse(chosen);
+    }
+
+    private String getAffinityKey(Request<?> request) {
+        if (request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null) {
+            String userId = context.getClientRequest().getHeaders().getFirst("X-User-Id");
+            return userId != null && !userId.isEmpty() ? userId : null;
+        }
+        return null;
+    }
+
+    /**
+     * Highest-random-weight choice: each user ranks every instance by hash(user, instance),
+     * so adding or removing an instance only moves the users whose top choice changed.
+     * Instances above loadFactor x average in-flight are skipped; returns null when all are.
+     */
+    private ServiceInstance rendezvousWithBoundedLoad(List<ServiceInstance> candidates, String affinityKey) {
+        int totalInFlight = 0;
+        for (ServiceInstance instance : candidates) {
+            totalInFlight += statsRegistry.get(instance).getInFlight();
+        }
+        double capacity = Math.ceil(affinityLoadFactor * (totalInFlight + 1) / candidates.size());
+
+        int keyHash = affinityKey.hashCode();
+        ServiceInstance best = null;
+        long bestWeight = Long.MIN_VALUE;
+        for (ServiceInstance instance : candidates) {
+            if (statsRegistry.get(instance).getInFlight() >= capacity) {
+                continue;
+            }
+            long weight = mix64(((long) keyHash << 32) | (InstanceStatsRegistry.instanceId(instance).hashCode() & 0xffffffffL));
+            if (best == null || weight > bestWeight) {
+                best = instance;
+                bestWeight = weight;
+            }
+        }
+        return best;
+    }
+
+    // SplitMix64 finalizer: spreads the combined hashes so rankings are independent per user
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private List<ServiceInstance> healthyInstances(List<ServiceInstance> instances) {
+        long now = System.nanoTime();
+        List<ServiceInstance> healthy = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!statsRegistry.get(instance).isEjected(now)) {
+                healthy.add(instance);
+            }
+        }
+        return healthy;
+    }
+
+    private ServiceInstance powerOfTwoChoices(List<ServiceInstance> candidates) {
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        double scoreA = statsRegistry.get(a).score(defaultLatencyMillis);
+        double scoreB = statsRegistry.get(b).score(defaultLatencyMillis);
+        return scoreA <= scoreB ? a : b;
+    }
+
+    private void recordDecision(String instanceId, String reason) {
+        Counter.builder("gateway.loadbalancer.decisions")
+                .tag("service", serviceId)
+                .tag("instance", instanceId)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,38 @@
+package com.togglecover.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.util.Set;
+
+// Per-client configuration; registered through @LoadBalancerClients in LoadBalancerConfig,
+// so deliberately not annotated with @Configuration.
+public class LatencyAwareLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> latencyAwareLoadBalancer(
+            Environment environment,
+            LoadBalancerClientFactory loadBalancerClientFactory,
+            InstanceStatsRegistry statsRegistry,
+            MeterRegistry meterRegistry,
+            @Value("${gateway.loadbalancer.default-latency-ms:50}") double defaultLatencyMillis,
+            @Value("${gateway.loadbalancer.affinity.services:}") Set<String> affinityServices,
+            @Value("${gateway.loadbalancer.affinity.load-factor:1.25}") double affinityLoadFactor) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        boolean affinityEnabled = affinityServices.stream().anyMatch(s -> s.equalsIgnoreCase(serviceId));
+        return new LatencyAwareLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class),
+                serviceId,
+                statsRegistry,
+                meterRegistry,
+                defaultLatencyMillis,
+                affinityEnabled,
+                affinityLoadFactor);
+    }
+}
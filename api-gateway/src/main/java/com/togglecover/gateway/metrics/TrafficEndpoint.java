@@ -0,0 +1,50 @@
+package com.togglecover.gateway.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code GET /actuator/traffic} shows the latest window for every route and
+ * upstream instance; {@code GET /actuator/traffic/{routeId}} shows one route.
+ * Like every actuator endpoint it is served on the internal management port.
+ */
+@Component
+@Endpoint(id = "traffic")
+public class TrafficEndpoint {
+
+    private final TrafficStatsRegistry registry;
+
+    public TrafficEndpoint(TrafficStatsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @ReadOperation
+    public Map<String, Object> traffic() {
+        Map<String, Object> routes = new TreeMap<>();
+        registry.getRoutes().forEach((routeId, traffic) -> routes.put(routeId, describe(traffic.stats())));
+
+        Map<String, Object> upstreams = new TreeMap<>();
+        registry.getUpstreams().forEach((serviceId, instances) -> {
+            Map<String, Object> byInstance = new TreeMap<>();
+            instances.forEach((instanceId, stats) -> byInstance.put(instanceId, describe(stats)));
+            upstreams.put(serviceId, byInstance);
+        });
+
+        return Map.of("routes", routes, "upstreams", upstreams);
+    }
+
+    @ReadOperation
+    public Map<String, Object> route(@Selector String routeId) {
+        TrafficStatsRegistry.RouteTraffic traffic = registry.getRoutes().get(routeId);
+        return traffic == null ? null : describe(traffic.stats());
+    }
+
+    private static Map<String, Object> describe(TrafficStats stats) {
+        return stats.getSnapshot().toMap(stats.getInFlight());
+    }
+}
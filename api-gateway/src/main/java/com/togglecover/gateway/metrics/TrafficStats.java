@@ -0,0 +1,118 @@
+package com.togglecover.gateway.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Latency, status-class and byte counters for one route or upstream instance.
+ * Recording is wait-free and allocation-free; {@link #roll} swaps out the
+ * interval histogram (recycling the previous one) and publishes an immutable
+ * {@link Snapshot} for readers, off the request path.
+ */
+public class TrafficStats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Recorder latency = new Recorder(HIGHEST_TRACKABLE_MICROS, 2);
+    private final LongAdder[] statusClasses = new LongAdder[5];
+    private final LongAdder bytes = new LongAdder();
+    private final IntSupplier inFlight;
+
+    // Only touched by the rolling thread
+    private Histogram recycled;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    TrafficStats(IntSupplier inFlight) {
+        this.inFlight = inFlight;
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusClasses[i] = new LongAdder();
+        }
+    }
+
+    void record(long latencyNanos, int status, long responseBytes) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+        latency.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+        int statusClass = status / 100 - 1;
+        if (statusClass >= 0 && statusClass < statusClasses.length) {
+            statusClasses[statusClass].increment();
+        }
+        if (responseBytes > 0) {
+            bytes.add(responseBytes);
+        }
+    }
+
+    synchronized void roll(long windowNanos) {
+        Histogram interval = latency.getIntervalHistogram(recycled);
+        recycled = interval;
+
+        double windowSeconds = windowNanos / 1e9;
+        long[] statusCounts = new long[statusClasses.length];
+        for (int i = 0; i < statusClasses.length; i++) {
+            statusCounts[i] = statusClasses[i].sumThenReset();
+        }
+
+        snapshot = new Snapshot(
+                interval.getTotalCount() / windowSeconds,
+                microsToMillis(interval.getValueAtPercentile(50)),
+                microsToMillis(interval.getValueAtPercentile(90)),
+                microsToMillis(interval.getValueAtPercentile(99)),
+                microsToMillis(interval.getValueAtPercentile(99.9)),
+                microsToMillis(interval.getMaxValue()),
+                bytes.sumThenReset() / windowSeconds,
+                statusCounts);
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public int getInFlight() {
+        return inFlight.getAsInt();
+    }
+
+    private static double microsToMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * One window's worth of traffic; rates are per second, latencies in milliseconds.
+     */
+    public record Snapshot(double requestsPerSecond, double p50, double p90, double p99, double p999,
+                           double max, double bytesPerSecond, long[] statusCounts) {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, 0, 0, new long[5]);
+
+        public long statusCount(int statusClass) {
+            return statusCounts[statusClass - 1];
+        }
+
+        public Map<String, Object> toMap(int inFlight) {
+            Map<String, Object> statuses = new LinkedHashMap<>();
+            for (int i = 0; i < statusCounts.length; i++) {
+                statuses.put((i + 1) + "xx", statusCounts[i]);
+            }
+
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("p50", p50);
+            latency.put("p90", p90);
+            latency.put("p99", p99);
+            latency.put("p999", p999);
+            latency.put("max", max);
+
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requestsPerSecond", requestsPerSecond);
+            map.put("latencyMillis", latency);
+            map.put("statuses", statuses);
+            map.put("bytesPerSecond", bytesPerSecond);
+            map.put("inFlight", inFlight);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.togglecover.gateway.metrics;
+
+import com.togglecover.gateway.accesslog.AccessLogWriter;
+import com.togglecover.gateway.filter.HedgedRequestGatewayFilterFactory;
+import com.togglecover.gateway.filter.JwtAuthenticationFilter;
+import com.togglecover.gateway.loadbalancer.InstanceStatsRegistry;
+import io.jsonwebtoken.Claims;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Records every routed request into the route's and the serving instance's
+ * {@link TrafficStats} and appends it to the access log. Runs first so
+ * requests answered by route filters (rate limiting, shedding, cache hits)
+ * are counted too.
+ */
+@Component
+public class TrafficStatsFilter implements GlobalFilter, Ordered {
+
+    // Nginx's convention for a client that went away before the response
+    private static final int CLIENT_CLOSED_REQUEST = 499;
+
+    private final TrafficStatsRegistry registry;
+    private final AccessLogWriter accessLog;
+
+    public TrafficStatsFilter(TrafficStatsRegistry registry, AccessLogWriter accessLog) {
+        this.registry = registry;
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        TrafficStatsRegistry.RouteTraffic traffic = registry.route(route.getId());
+        traffic.inFlight().incrementAndGet();
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        CountingResponse response = new CountingResponse(exchange.getResponse());
+
+        return chain.filter(exchange.mutate().response(response).build())
+                .doOnError(response::failed)
+                .doFinally(signal -> {
+                    traffic.inFlight().decrementAndGet();
+                    long elapsed = System.nanoTime() - start;
+                    int status = response.statusFor(signal);
+                    traffic.stats().record(elapsed, status, response.bytes);
+
+                    ServiceInstance instance = servedBy(exchange);
+                    TrafficStats upstream = instance != null ? registry.upstream(instance) : null;
+                    if (upstream != null) {
+                        upstream.record(elapsed, status, response.bytes);
+                    }
+
+                    Claims claims = exchange.getAttribute(JwtAuthenticationFilter.CLAIMS_ATTR);
+                    ServerHttpRequest request = exchange.getRequest();
+                    accessLog.append(startMillis, elapsed, status, request.getMethod(), response.bytes,
+                            request.getRemoteAddress(), route.getId(),
+                            claims == null ? null : claims.get("userId", String.class),
+                            instance == null ? null : InstanceStatsRegistry.instanceId(instance),
+                            request.getURI().getRawPath(), request.getURI().getRawQuery());
+                });
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    private static ServiceInstance servedBy(ServerWebExchange exchange) {
+        ServiceInstance hedgeWinner = exchange.getAttribute(HedgedRequestGatewayFilterFactory.HEDGE_WINNER_ATTR);
+        if (hedgeWinner != null) {
+            return hedgeWinner;
+        }
+        Response<ServiceInstance> lbResponse = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        return lbResponse != null && lbResponse.hasServer() ? lbResponse.getServer() : null;
+    }
+
+    private static class CountingResponse extends ServerHttpResponseDecorator {
+
+        // Written and read on the exchange's own (serialised) signal path
+        private long bytes;
+        private int failureStatus;
+
+        CountingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(buffer -> bytes += buffer.readableByteCount()));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body)
+                    .map(part -> Flux.from(part).doOnNext(buffer -> bytes += buffer.readableByteCount())));
+        }
+
+        void failed(Throwable error) {
+            failureStatus = error instanceof ResponseStatusException statusException
+                    ? statusException.getStatusCode().value()
+                    : 500;
+        }
+
+        int statusFor(SignalType signal) {
+            if (signal == SignalType.ON_ERROR) {
+                return failureStatus;
+            }
+            if (signal == SignalType.CANCEL) {
+                return CLIENT_CLOSED_REQUEST;
+            }
+            HttpStatusCode status = getStatusCode();
+            return status != null ? status.value() : 200;
+        }
+    }
+}
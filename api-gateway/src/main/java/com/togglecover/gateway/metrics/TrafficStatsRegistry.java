@@ -0,0 +1,158 @@
+package com.togglecover.gateway.metrics;
+
+import com.togglecover.gateway.loadbalancer.InstanceStatsRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.search.Search;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Per-route and per-upstream-instance {@link TrafficStats}, rolled into fresh
+ * snapshots every window and published as gauges (and so to Prometheus).
+ * Upstream instances follow the load balancer's {@link InstanceStatsRegistry}:
+ * once it drops a departed instance, the next roll drops its stats and gauges.
+ */
+@Component
+public class TrafficStatsRegistry {
+
+    private static final String UPSTREAM_PREFIX = "gateway.upstream";
+
+    private final MeterRegistry meterRegistry;
+    private final InstanceStatsRegistry instanceStatsRegistry;
+    private final Map<String, RouteTraffic> routes = new ConcurrentHashMap<>();
+
+    // serviceId -> instanceId, nested so lookups don't build a composite key per request
+    private final Map<String, Map<String, TrafficStats>> upstreams = new ConcurrentHashMap<>();
+
+    @Value("${gateway.traffic-stats.window:10s}")
+    private Duration window;
+
+    private Disposable rollTask;
+
+    public TrafficStatsRegistry(MeterRegistry meterRegistry, InstanceStatsRegistry instanceStatsRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.instanceStatsRegistry = instanceStatsRegistry;
+    }
+
+    @PostConstruct
+    public void startRolling() {
+        rollTask = Flux.interval(window)
+                .onBackpressureDrop()
+                .subscribe(tick -> roll());
+    }
+
+    @PreDestroy
+    public void stopRolling() {
+        if (rollTask != null) {
+            rollTask.dispose();
+        }
+    }
+
+    RouteTraffic route(String routeId) {
+        RouteTraffic traffic = routes.get(routeId);
+        return traffic != null ? traffic : routes.computeIfAbsent(routeId, this::registerRoute);
+    }
+
+    /**
+     * The instance's stats, or null when the load balancer no longer tracks it
+     * (a request that finished after its instance left).
+     */
+    TrafficStats upstream(ServiceInstance instance) {
+        String serviceId = instance.getServiceId();
+        String instanceId = InstanceStatsRegistry.instanceId(instance);
+        if (!instanceStatsRegistry.isTracked(serviceId, instanceId)) {
+            return null;
+        }
+        Map<String, TrafficStats> instances = upstreams.computeIfAbsent(serviceId, id -> new ConcurrentHashMap<>());
+        TrafficStats stats = instances.get(instanceId);
+        return stats != null ? stats : instances.computeIfAbsent(instanceId, id -> registerUpstream(instance, id));
+    }
+
+    Map<String, RouteTraffic> getRoutes() {
+        return routes;
+    }
+
+    Map<String, Map<String, TrafficStats>> getUpstreams() {
+        return upstreams;
+    }
+
+    private void roll() {
+        long windowNanos = window.toNanos();
+        routes.values().forEach(route -> route.stats().roll(windowNanos));
+        upstreams.forEach((serviceId, instances) -> instances.entrySet().removeIf(entry -> {
+            if (!instanceStatsRegistry.isTracked(serviceId, entry.getKey())) {
+                removeUpstreamMeters(serviceId, entry.getKey());
+                return true;
+            }
+            entry.getValue().roll(windowNanos);
+            return false;
+        }));
+    }
+
+    private RouteTraffic registerRoute(String routeId) {
+        AtomicInteger inFlight = new AtomicInteger();
+        TrafficStats stats = new TrafficStats(inFlight::get);
+        registerGauges("gateway.route", Tags.of("route", routeId), stats);
+        return new RouteTraffic(stats, inFlight);
+    }
+
+    private TrafficStats registerUpstream(ServiceInstance instance, String instanceId) {
+        // The load balancer lifecycle already counts in-flight requests per instance
+        TrafficStats stats = new TrafficStats(() -> instanceStatsRegistry.getInFlight(instance));
+        registerGauges(UPSTREAM_PREFIX, Tags.of("service", instance.getServiceId(), "instance", instanceId), stats);
+        return stats;
+    }
+
+    private void removeUpstreamMeters(String serviceId, String instanceId) {
+        for (Meter meter : Search.in(meterRegistry).tags("service", serviceId, "instance", instanceId).meters()) {
+            if (meter.getId().getName().startsWith(UPSTREAM_PREFIX + ".")) {
+                meterRegistry.remove(meter);
+            }
+        }
+    }
+
+    private void registerGauges(String prefix, Tags tags, TrafficStats stats) {
+        gauge(prefix + ".requests.rate", tags, stats, s -> s.getSnapshot().requestsPerSecond(), null);
+        gauge(prefix + ".latency", tags.and("quantile", "0.5"), stats, s -> s.getSnapshot().p50(), "milliseconds");
+        gauge(prefix + ".latency", tags.and("quantile", "0.9"), stats, s -> s.getSnapshot().p90(), "milliseconds");
+        gauge(prefix + ".latency", tags.and("quantile", "0.99"), stats, s -> s.getSnapshot().p99(), "milliseconds");
+        gauge(prefix + ".latency", tags.and("quantile", "0.999"), stats, s -> s.getSnapshot().p999(), "milliseconds");
+        gauge(prefix + ".latency.max", tags, stats, s -> s.getSnapshot().max(), "milliseconds");
+        gauge(prefix + ".bytes.rate", tags, stats, s -> s.getSnapshot().bytesPerSecond(), null);
+        gauge(prefix + ".in-flight", tags, stats, TrafficStats::getInFlight, null);
+        // Responses per status class in the last window
+        for (int statusClass = 1; statusClass <= 5; statusClass++) {
+            int current = statusClass;
+            gauge(prefix + ".responses", tags.and("status", statusClass + "xx"), stats,
+                    s -> s.getSnapshot().statusCount(current), null);
+        }
+    }
+
+    private void gauge(String name, Tags tags, TrafficStats stats, ToDoubleFunction<TrafficStats> value,
+                       String baseUnit) {
+        Gauge.builder(name, stats, value)
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Route-level stats; unlike upstream instances, routes count their own in-flight requests.
+     */
+    record RouteTraffic(TrafficStats stats, AtomicInteger inFlight) {
+    }
+}
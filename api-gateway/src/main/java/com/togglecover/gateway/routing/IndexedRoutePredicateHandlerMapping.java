@@ -0,0 +1,81 @@
+package com.togglecover.gateway.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.config.GlobalCorsProperties;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
+import org.springframework.cloud.gateway.handler.FilteringWebHandler;
+import org.springframework.cloud.gateway.handler.RoutePredicateHandlerMapping;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+import org.springframework.cloud.gateway.route.RouteDefinitionLocator;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Route lookup through a {@link RouteIndex} instead of testing every route's
+ * predicates in turn. The index is rebuilt whenever the route table is
+ * refreshed (config reloads, discovery changes).
+ */
+public class IndexedRoutePredicateHandlerMapping extends RoutePredicateHandlerMapping
+        implements ApplicationListener<RefreshRoutesResultEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexedRoutePredicateHandlerMapping.class);
+
+    private final RouteLocator routeLocator;
+    private final RouteDefinitionLocator routeDefinitionLocator;
+
+    private volatile RouteIndex index;
+
+    public IndexedRoutePredicateHandlerMapping(FilteringWebHandler webHandler, RouteLocator routeLocator,
+                                               RouteDefinitionLocator routeDefinitionLocator,
+                                               GlobalCorsProperties globalCorsProperties, Environment environment) {
+        super(webHandler, routeLocator, globalCorsProperties, environment);
+        this.routeLocator = routeLocator;
+        this.routeDefinitionLocator = routeDefinitionLocator;
+    }
+
+    @Override
+    public void onApplicationEvent(RefreshRoutesResultEvent event) {
+        if (event.isSuccess()) {
+            buildIndex().subscribe(
+                    rebuilt -> log.debug("Route index rebuilt with {} routes", rebuilt.size()),
+                    e -> log.warn("Route index rebuild failed, keeping the previous one: {}", e.getMessage()));
+        }
+    }
+
+    @Override
+    protected Mono<Route> lookupRoute(ServerWebExchange exchange) {
+        RouteIndex current = index;
+        Mono<RouteIndex> routeIndex = current != null ? Mono.just(current) : buildIndex();
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+
+        return routeIndex
+                .flatMapMany(candidates -> Flux.fromIterable(candidates.candidates(path)))
+                // Same per-route evaluation as the superclass, over the candidates only
+                .concatMap(route -> Mono.just(route)
+                        .filterWhen(r -> {
+                            exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_PREDICATE_ROUTE_ATTR, r.getId());
+                            return r.getPredicate().apply(exchange);
+                        })
+                        .doOnError(e -> log.error("Error applying predicate for route: {}", route.getId(), e))
+                        .onErrorResume(e -> Mono.empty()))
+                .next()
+                .map(route -> {
+                    validateRoute(route, exchange);
+                    return route;
+                });
+    }
+
+    private Mono<RouteIndex> buildIndex() {
+        return Mono.zip(routeLocator.getRoutes().collectList(),
+                        routeDefinitionLocator.getRouteDefinitions().collectMap(RouteDefinition::getId))
+                .map(routesAndDefinitions -> new RouteIndex(routesAndDefinitions.getT1(), routesAndDefinitions.getT2()))
+                .doOnNext(rebuilt -> index = rebuilt);
+    }
+}
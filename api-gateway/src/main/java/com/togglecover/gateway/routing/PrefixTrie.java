@@ -0,0 +1,91 @@
+package com.togglecover.gateway.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Character trie of string prefixes. A lookup walks the path once, so its
+ * cost depends on the path length, not on how many prefixes were added.
+ *
+ * <p>Built once and then only read; callers swap in a new trie when the
+ * prefixes change rather than mutating a published one.
+ */
+public final class PrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    public void put(String prefix, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.childOrCreate(prefix.charAt(i));
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * True if any added prefix is a prefix of {@code path}.
+     */
+    public boolean matchesPrefixOf(CharSequence path) {
+        Node<V> node = root;
+        for (int i = 0; ; i++) {
+            if (!node.values.isEmpty()) {
+                return true;
+            }
+            if (i == path.length() || (node = node.child(path.charAt(i))) == null) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Visits the values of every added prefix of {@code path}, shortest prefix first.
+     */
+    public void forEachPrefixOf(CharSequence path, Consumer<? super V> action) {
+        Node<V> node = root;
+        for (int i = 0; ; i++) {
+            node.values.forEach(action);
+            if (i == path.length() || (node = node.child(path.charAt(i))) == null) {
+                return;
+            }
+        }
+    }
+
+    private static final class Node<V> {
+
+        private static final char[] NO_LABELS = new char[0];
+
+        // Sorted labels with their children at the same index
+        private char[] labels = NO_LABELS;
+        private Object[] children = new Object[0];
+        private final List<V> values = new ArrayList<>(1);
+
+        @SuppressWarnings("unchecked")
+        Node<V> child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? (Node<V>) children[index] : null;
+        }
+
+        Node<V> childOrCreate(char label) {
+            Node<V> existing = child(label);
+            if (existing != null) {
+                return existing;
+            }
+            int insertAt = -Arrays.binarySearch(labels, label) - 1;
+            Node<V> created = new Node<>();
+
+            char[] newLabels = new char[labels.length + 1];
+            Object[] newChildren = new Object[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = created;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+            return created;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.togglecover.gateway.routing;
+
+import org.springframework.cloud.gateway.handler.predicate.PredicateDefinition;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteDefinition;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Narrows the routes worth testing for a request path. Each route is indexed
+ * under the literal prefix of its {@code Path} predicate patterns; routes
+ * without one (or built in code, with no definition) are always candidates.
+ * Candidates keep the route table's order, so the first full predicate match
+ * is the same route a linear scan would pick.
+ */
+final class RouteIndex {
+
+    private static final Set<String> PATH_OPTION_ARGS = Set.of("matchTrailingSlash", "matchOptionalTrailingSeparator");
+
+    private final List<Route> routes;
+    private final PrefixTrie<Integer> byPathPrefix = new PrefixTrie<>();
+    private final BitSet unindexed = new BitSet();
+
+    RouteIndex(List<Route> routes, Map<String, RouteDefinition> definitions) {
+        this.routes = List.copyOf(routes);
+        for (int i = 0; i < this.routes.size(); i++) {
+            List<String> prefixes = literalPrefixes(definitions.get(this.routes.get(i).getId()));
+            if (prefixes.isEmpty()) {
+                unindexed.set(i);
+            }
+            for (String prefix : prefixes) {
+                byPathPrefix.put(prefix, i);
+            }
+        }
+    }
+
+    List<Route> candidates(String path) {
+        // Path predicates compare decoded segments; don't second-guess them on encoded paths
+        if (path.indexOf('%') >= 0) {
+            return routes;
+        }
+        BitSet matches = (BitSet) unindexed.clone();
+        byPathPrefix.forEachPrefixOf(path, matches::set);
+
+        List<Route> candidates = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            candidates.add(routes.get(i));
+        }
+        return candidates;
+    }
+
+    int size() {
+        return routes.size();
+    }
+
+    private static List<String> literalPrefixes(RouteDefinition definition) {
+        if (definition == null) {
+            return List.of();
+        }
+        // Predicates are ANDed, so any one Path predicate is enough to index by
+        for (PredicateDefinition predicate : definition.getPredicates()) {
+            if ("Path".equals(predicate.getName())) {
+                List<String> prefixes = new ArrayList<>();
+                predicate.getArgs().forEach((name, pattern) -> {
+                    if (!PATH_OPTION_ARGS.contains(name)) {
+                        prefixes.add(literalPrefix(pattern.trim()));
+                    }
+                });
+                return prefixes;
+            }
+        }
+        return List.of();
+    }
+
+    /**
+     * The part of a pattern every matching path starts with: "/api/v1/users/**" gives "/api/v1/users",
+     * since "**" also matches the bare "/api/v1/users".
+     */
+    static String literalPrefix(String pattern) {
+        int wildcard = -1;
+        for (int i = 0; i < pattern.length() && wildcard < 0; i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                wildcard = i;
+            }
+        }
+        if (wildcard < 0) {
+            return pattern;
+        }
+        return pattern.substring(0, Math.max(0, pattern.lastIndexOf('/', wildcard)));
+    }
+}
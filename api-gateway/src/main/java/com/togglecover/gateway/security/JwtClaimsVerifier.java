@@ -0,0 +1,109 @@
+package com.togglecover.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class JwtClaimsVerifier {
+
+    private static final String ACCESS_TOKEN = "ACCESS";
+
+    private final JwtParser parser;
+
+    // Keyed by the signature segment; the entry keeps the full token so a forged
+    // header/payload reusing a known signature never matches.
+    private final Cache<String, VerifiedToken> claimsCache;
+
+    public JwtClaimsVerifier(@Value("${jwt.secret}") String jwtSecret,
+                             @Value("${gateway.jwt.claims-cache.max-size:100000}") long maxSize,
+                             MeterRegistry meterRegistry) {
+        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ExpireAtTokenExpiry())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, claimsCache, "gateway.jwt.claims");
+    }
+
+    /**
+     * Returns the verified claims for the token, or null if the token is malformed,
+     * badly signed, expired or not an access token (refresh tokens only work
+     * against the auth service's refresh endpoint). Tokens seen before are served from the cache until
+     * their own expiry without re-checking the signature.
+     */
+    public Claims verify(String token) {
+        int lastDot = token.lastIndexOf('.');
+        if (lastDot < 0 || lastDot == token.length() - 1) {
+            return null;
+        }
+
+        String signature = token.substring(lastDot + 1);
+        VerifiedToken cached = claimsCache.getIfPresent(signature);
+        if (cached != null && cached.token().equals(token)) {
+            return cached.claims();
+        }
+
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (Exception e) {
+            return null;
+        }
+
+        Date expiration = claims.getExpiration();
+        if (expiration == null || !expiration.after(new Date())) {
+            return null;
+        }
+        // Access tokens issued before tokenType was added have none; accept those until
+        // they have all expired (auth-service's jwt.expiration after rollout)
+        String tokenType = claims.get("tokenType", String.class);
+        if (tokenType != null && !ACCESS_TOKEN.equals(tokenType)) {
+            return null;
+        }
+
+        claimsCache.put(signature, new VerifiedToken(token, claims, expiration.getTime()));
+        return claims;
+    }
+
+    private record VerifiedToken(String token, Claims claims, long expiresAtMillis) {
+    }
+
+    private static class ExpireAtTokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long remainingMillis = Math.max(0, value.expiresAtMillis() - System.currentTimeMillis());
+            return TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
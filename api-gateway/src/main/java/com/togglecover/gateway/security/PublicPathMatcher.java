@@ -0,0 +1,61 @@
+package com.togglecover.gateway.security;
+
+import com.togglecover.gateway.routing.PrefixTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Paths that skip JWT authentication, from {@code gateway.security.public-paths}
+ * (served by config-service). A path is public if it starts with any listed
+ * prefix; the prefixes are compiled into a trie and recompiled when the
+ * property changes.
+ */
+@Component
+public class PublicPathMatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(PublicPathMatcher.class);
+
+    static final String PROPERTY = "gateway.security.public-paths";
+
+    private final Environment environment;
+    private volatile PrefixTrie<String> publicPaths;
+
+    public PublicPathMatcher(Environment environment) {
+        this.environment = environment;
+        this.publicPaths = compile(bindPublicPaths());
+    }
+
+    public boolean isPublic(String path) {
+        return publicPaths.matchesPrefixOf(path);
+    }
+
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith(PROPERTY))) {
+            List<String> paths = bindPublicPaths();
+            publicPaths = compile(paths);
+            log.info("Public paths reloaded: {}", paths);
+        }
+    }
+
+    private List<String> bindPublicPaths() {
+        // No list means nothing is public: routes with the JWT filter always require a token
+        return Binder.get(environment).bind(PROPERTY, Bindable.listOf(String.class)).orElse(List.of());
+    }
+
+    private static PrefixTrie<String> compile(List<String> paths) {
+        PrefixTrie<String> trie = new PrefixTrie<>();
+        paths.stream()
+                .filter(path -> !path.isBlank())
+                .forEach(path -> trie.put(path, path));
+        return trie;
+    }
+}
@@ -0,0 +1,164 @@
+package com.togglecover.gateway.security;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gateway side of auth-service's token revocation. Revocations are published
+ * by auth-service on {@code auth:revocations} and stored as
+ * {@code revoked:<kind>:<id>}; the gateway keeps them in a Bloom filter so a
+ * token that was never revoked passes without a Redis call, and only filter
+ * hits are looked up in Redis.
+ */
+@Component
+public class TokenRevocationChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationChecker.class);
+
+    private static final String CHANNEL = "auth:revocations";
+    private static final String KEY_PREFIX = "revoked:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final int expectedEntries;
+    private final double falsePositiveRate;
+
+    @Value("${gateway.revocation.rebuild-interval:60s}")
+    private Duration rebuildInterval;
+
+    private volatile BloomFilter filter;
+    // Filter being rebuilt; revocations received meanwhile go into both
+    private volatile BloomFilter rebuilding;
+    // Until the first load from Redis every check goes to Redis
+    private volatile boolean loaded;
+
+    private Disposable subscription;
+    private Disposable rebuildTask;
+
+    public TokenRevocationChecker(ReactiveStringRedisTemplate redisTemplate,
+                                  @Value("${gateway.revocation.expected-entries:100000}") int expectedEntries,
+                                  @Value("${gateway.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.redisTemplate = redisTemplate;
+        this.expectedEntries = expectedEntries;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedEntries, falsePositiveRate);
+    }
+
+    @PostConstruct
+    public void start() {
+        // Deferred: subscribing connects eagerly, and Redis may not be up yet
+        subscription = Flux.defer(() -> redisTemplate.listenToChannel(CHANNEL))
+                .doOnNext(message -> add(message.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+
+        // The first rebuild is the initial load
+        rebuildTask = Flux.interval(Duration.ZERO, rebuildInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (rebuildTask != null) {
+            rebuildTask.dispose();
+        }
+    }
+
+    public Mono<Boolean> isRevoked(Claims claims) {
+        List<String> entries = new ArrayList<>(3);
+        if (claims.getId() != null) {
+            entries.add("jti:" + claims.getId());
+        }
+        String sessionId = claims.get("sessionId", String.class);
+        if (sessionId != null) {
+            entries.add("session:" + sessionId);
+        }
+        if (claims.getSubject() != null) {
+            entries.add("user:" + claims.getSubject());
+        }
+
+        if (loaded) {
+            BloomFilter current = filter;
+            entries.removeIf(entry -> !current.mightContain(entry));
+        }
+        if (entries.isEmpty()) {
+            return Mono.just(false);
+        }
+
+        long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() / 1000 : 0;
+        return redisTemplate.opsForValue()
+                .multiGet(entries.stream().map(entry -> KEY_PREFIX + entry).toList())
+                .map(values -> {
+                    for (int i = 0; i < entries.size(); i++) {
+                        String value = values.get(i);
+                        if (value == null) {
+                            continue;
+                        }
+                        // User entries hold a cutoff: tokens issued at or before it are revoked
+                        if (!entries.get(i).startsWith("user:") || issuedAt <= Long.parseLong(value)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                })
+                .onErrorResume(e -> {
+                    // Best effort, like auth-service: Redis being down must not lock everyone out
+                    log.warn("Revocation check unavailable, accepting token: {}", e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    private Mono<Void> rebuild() {
+        BloomFilter next = new BloomFilter(expectedEntries, falsePositiveRate);
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+
+        return Mono.defer(() -> {
+                    rebuilding = next;
+                    return redisTemplate.scan(options)
+                            .doOnNext(key -> next.put(key.substring(KEY_PREFIX.length())))
+                            .count();
+                })
+                .doOnNext(count -> {
+                    // Swap before clearing so no concurrent revocation lands only in the old filter
+                    filter = next;
+                    rebuilding = null;
+                    loaded = true;
+                    if (count > expectedEntries) {
+                        log.warn("{} revocations exceed gateway.revocation.expected-entries ({})", count, expectedEntries);
+                    }
+                })
+                .doOnError(e -> rebuilding = null)
+                .onErrorResume(e -> {
+                    log.warn("Revocation filter rebuild failed, keeping the current one: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void add(String entry) {
+        filter.put(entry);
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(entry);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.togglecover.auth.benchmark;
+
+import com.togglecover.auth.entity.User;
+import com.togglecover.auth.service.GeoLocationService;
+import com.togglecover.auth.service.risk.LocationSignal;
+import com.togglecover.auth.service.risk.LoginActivity;
+import com.togglecover.auth.service.risk.RiskContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis cost of an OTP login's risk signals: the sequential calls the risk
+ * engine used to make against the scripts it makes now ({@link LoginActivity}
+ * plus the {@link LocationSignal} swap, run one after the other here although
+ * the engine runs them concurrently).
+ *
+ * <p>Runs against an embedded Redis on loopback by default, where a round trip
+ * is at its cheapest; pass {@code -jvmArgsAppend "-Dredis.host=... -Dredis.port=..."}
+ * in {@code jmh.args} to measure against a real Redis over the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RiskSignalsRedisBenchmark {
+
+    private static final String PHONE = "+919000000001";
+    private static final String USER_ID = "user-1";
+    private static final String DEVICE = "device-1";
+    private static final String LOCATION = "Mumbai, IN";
+
+    private RedisServer embeddedRedis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private LoginActivity loginActivity;
+    private LocationSignal locationSignal;
+    private User user;
+
+    @Setup
+    public void setUp() throws IOException {
+        String host = System.getProperty("redis.host");
+        int port = Integer.getInteger("redis.port", 6379);
+        if (host == null) {
+            host = "localhost";
+            port = freePort();
+            embeddedRedis = new RedisServer(port);
+            embeddedRedis.start();
+        }
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        GeoLocationService geoLocationService = mock(GeoLocationService.class);
+        when(geoLocationService.getLocation(any())).thenReturn(LOCATION);
+        loginActivity = new LoginActivity(redisTemplate);
+        locationSignal = new LocationSignal(geoLocationService, redisTemplate);
+
+        user = User.builder()
+                .id(USER_ID)
+                .phone(PHONE)
+                .userType(User.UserType.GIG_WORKER)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        if (embeddedRedis != null) {
+            embeddedRedis.stop();
+        }
+    }
+
+    /**
+     * The calls assessOtpLoginRisk made before they were gathered into scripts:
+     * failed logins, location read and write, device check (and add when new),
+     * then the OTP request counter.
+     */
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        String failedLoginKey = "failed:login:" + PHONE;
+        blackhole.consume(redisTemplate.opsForValue().get(failedLoginKey));
+
+        String lastLocationKey = "user:location:" + USER_ID;
+        blackhole.consume(redisTemplate.opsForValue().get(lastLocationKey));
+        redisTemplate.opsForValue().set(lastLocationKey, LOCATION, 7, TimeUnit.DAYS);
+
+        String knownDevicesKey = "user:devices:" + USER_ID;
+        if (!Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(knownDevicesKey, DEVICE))) {
+            redisTemplate.opsForSet().add(knownDevicesKey, DEVICE);
+        }
+
+        String otpRequestKey = "otp:requests:" + PHONE;
+        blackhole.consume(redisTemplate.opsForValue().get(otpRequestKey));
+        redisTemplate.opsForValue().increment(otpRequestKey, 1);
+        redisTemplate.expire(otpRequestKey, 1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public void scripts(Blackhole blackhole) {
+        RiskContext context = RiskContext.builder()
+                .kind(RiskContext.Kind.OTP_LOGIN)
+                .user(user)
+                .clientIp("203.0.113.7")
+                .deviceFingerprint(DEVICE)
+                .build();
+        blackhole.consume(loginActivity.of(context));
+        blackhole.consume(locationSignal.evaluate(context));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
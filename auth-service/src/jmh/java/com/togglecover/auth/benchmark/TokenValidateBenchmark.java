@@ -0,0 +1,126 @@
+package com.togglecover.auth.benchmark;
+
+import com.togglecover.auth.controller.TokenController;
+import com.togglecover.auth.entity.User;
+import com.togglecover.auth.security.JwtUtil;
+import com.togglecover.auth.service.TokenRevocationService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@code POST /api/v1/auth/token/validate} before and after parsing each token
+ * once with a prebuilt key and parser. {@code before} replays the earlier
+ * controller: validateToken plus extractUserId and extractUserType, four
+ * signature checks, each building its own key and parser. {@code after} calls
+ * the current {@link TokenController}, including the revocation check against
+ * a loaded (empty) Bloom filter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenValidateBenchmark {
+
+    private static final String SECRET = "mySuperSecretKeyForToggleCoverApplicationThatIsAtLeast256BitsLong";
+
+    private TokenController controller;
+    private Map<String, String> request;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        TokenRevocationService revocationService = new TokenRevocationService(
+                mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(revocationService, "expectedEntries", 100_000);
+        ReflectionTestUtils.setField(revocationService, "falsePositiveRate", 0.001);
+        revocationService.init();
+        ReflectionTestUtils.setField(revocationService, "loaded", true);
+
+        JwtUtil jwtUtil = new JwtUtil(revocationService);
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpiration", 3_600_000L);
+        jwtUtil.init();
+
+        controller = new TokenController(jwtUtil, null, null);
+        token = jwtUtil.generateToken(User.builder()
+                .id("user-1")
+                .phone("+919000000001")
+                .fullName("Benchmark User")
+                .userType(User.UserType.GIG_WORKER)
+                .build());
+        request = Map.of("token", token);
+    }
+
+    @Benchmark
+    public Map<String, Object> before() {
+        boolean isValid = PerCallParsing.validateToken(token);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("valid", isValid);
+        try {
+            response.put("userId", isValid ? PerCallParsing.extractUserId(token) : null);
+            response.put("userType", isValid ? PerCallParsing.extractUserType(token).name() : null);
+        } catch (Exception e) {
+            response.put("userId", null);
+            response.put("userType", null);
+        }
+        return response;
+    }
+
+    @Benchmark
+    public Map<String, Object> after() {
+        return controller.validateToken(request).getBody();
+    }
+
+    /**
+     * JwtUtil's token checks as they were: every call derives the key and
+     * builds a parser, and validation parses twice to check expiry.
+     */
+    private static final class PerCallParsing {
+
+        static boolean validateToken(String token) {
+            try {
+                parse(token);
+                return !parse(token).getExpiration().before(new Date());
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        static String extractUserId(String token) {
+            return parse(token).getSubject();
+        }
+
+        static User.UserType extractUserType(String token) {
+            return User.UserType.valueOf(parse(token).get("userType", String.class));
+        }
+
+        private static Claims parse(String token) {
+            SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+            return Jwts.parserBuilder()
+                    .setSigningKey(key)
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        }
+    }
+}
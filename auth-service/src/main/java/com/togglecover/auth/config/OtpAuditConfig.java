@@ -0,0 +1,26 @@
+package com.togglecover.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class OtpAuditConfig {
+
+    /**
+     * Writes the OTP audit trail off the request path. A single thread keeps
+     * the database load flat; when the queue is full audit records are dropped
+     * (see {@code OtpAuditService}).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor otpAuditExecutor(
+            @Value("${otp.audit.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("otp-audit-");
+        return executor;
+    }
+}
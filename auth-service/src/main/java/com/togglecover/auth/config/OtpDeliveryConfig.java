@@ -0,0 +1,28 @@
+package com.togglecover.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class OtpDeliveryConfig {
+
+    /**
+     * Makes the provider calls for queued OTPs. Each provider has its own
+     * concurrency limit, enforced by {@code OtpDeliveryDispatcher}; the pool
+     * has one thread per permit so no call waits for a thread.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor otpDeliveryExecutor(
+            @Value("${otp.delivery.msg91.max-concurrency:4}") int msg91Concurrency,
+            @Value("${otp.delivery.twilio.max-concurrency:8}") int twilioConcurrency) {
+        int poolSize = msg91Concurrency + twilioConcurrency;
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize);
+        executor.setThreadNamePrefix("otp-delivery-");
+        return executor;
+    }
+}
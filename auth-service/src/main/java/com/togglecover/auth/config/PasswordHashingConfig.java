@@ -0,0 +1,47 @@
+package com.togglecover.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class PasswordHashingConfig {
+
+    /**
+     * Runs every bcrypt encode/verify so a login storm cannot occupy all request
+     * threads. Hashing is pure CPU, so the pool defaults to the core count; when
+     * the queue is full new work is rejected rather than queued (see
+     * {@code PasswordHashingService}).
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${password.hashing.threads:0}") int threads,
+            @Value("${password.hashing.queue-capacity:64}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        return executor;
+    }
+
+    /**
+     * Background upgrades of old password hashes. Kept apart from the
+     * interactive pool so rehashes never queue in front of a login, and on
+     * a single low-priority thread so they only use spare CPU.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordRehashExecutor(
+            @Value("${password.hashing.rehash.threads:1}") int threads,
+            @Value("${password.hashing.rehash.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("password-rehash-");
+        return executor;
+    }
+}
@@ -1,14 +1,24 @@
 package com.togglecover.auth.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
 
+    /**
+     * Provider calls (MSG91, geolocation) hold a delivery slot or a request
+     * thread while they wait, so they must not wait forever.
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(@Value("${rest.client.connect-timeout-ms:5000}") int connectTimeoutMillis,
+                                     @Value("${rest.client.read-timeout-ms:10000}") int readTimeoutMillis) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMillis);
+        requestFactory.setReadTimeout(readTimeoutMillis);
+        return new RestTemplate(requestFactory);
     }
 }
\ No newline at end of file
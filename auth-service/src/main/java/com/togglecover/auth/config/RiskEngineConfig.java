@@ -0,0 +1,59 @@
+package com.togglecover.auth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "risk.engine")
+public class RiskEngineConfig {
+    private boolean enabled = true;
+    private Threshold threshold = new Threshold();
+    private Duration defaultDeadline = Duration.ofMillis(200);
+    private Map<String, Signal> signals = new HashMap<>();
+
+    @Data
+    public static class Threshold {
+        // Scores above high are high risk; above medium need additional auth
+        private int high = 50;
+        private int medium = 30;
+    }
+
+    @Data
+    public static class Signal {
+        // Null to use the signal's default weight
+        private Integer weight;
+        private Duration deadline;
+        private int fallbackScore;
+    }
+
+    public Signal signal(String name) {
+        return signals.getOrDefault(name, new Signal());
+    }
+
+    public int weight(String name, int defaultWeight) {
+        Integer weight = signal(name).getWeight();
+        return weight != null ? weight : defaultWeight;
+    }
+
+    public Duration deadline(String name) {
+        Duration deadline = signal(name).getDeadline();
+        return deadline != null ? deadline : defaultDeadline;
+    }
+
+    /**
+     * Risk signals mostly wait on Redis or remote lookups, one virtual thread each.
+     */
+    @Bean
+    public ExecutorService riskSignalExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
@@ -0,0 +1,30 @@
+package com.togglecover.auth.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class TokenValidationConfig {
+
+    /**
+     * Verifies batch validation chunks in parallel. Signature checks are pure CPU,
+     * so the pool is sized to the cores; once the queue is full the request thread
+     * verifies its own chunk instead of queueing more work.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor tokenValidationExecutor(
+            @Value("${token.validation.executor.queue-capacity:1000}") int queueCapacity) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(cores);
+        executor.setMaxPoolSize(cores);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("token-validation-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
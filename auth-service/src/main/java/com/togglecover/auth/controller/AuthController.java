@@ -8,8 +8,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -60,6 +63,17 @@ public class AuthController {
         return ResponseEntity.ok(authService.resetPassword(request));
     }
 
+    @PostMapping("/logout")
+    @Operation(summary = "Logout, revoking the token and its session")
+    public ResponseEntity<ApiResponse> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ") || authorization.substring(7).isBlank()) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing or malformed bearer token");
+        }
+        // An expired, revoked or otherwise invalid token is answered with 401 by GlobalExceptionHandler
+        return ResponseEntity.ok(authService.logout(authorization.substring(7).trim()));
+    }
+
     @PostMapping("/validate")
     @Operation(summary = "Validate JWT token")
     public ResponseEntity<Boolean> validateToken(@RequestParam String token) {
@@ -1,14 +1,23 @@
 package com.togglecover.auth.controller;
 
+import com.togglecover.auth.dto.RefreshTokenRequest;
+import com.togglecover.auth.dto.TokenBatchValidationRequest;
+import com.togglecover.auth.dto.TokenBatchValidationResponse;
+import com.togglecover.auth.dto.TokenResponse;
 import com.togglecover.auth.security.JwtUtil;
+import com.togglecover.auth.security.ParsedToken;
+import com.togglecover.auth.service.AuthService;
+import com.togglecover.auth.service.TokenValidationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/auth/token")
@@ -17,36 +26,45 @@ import java.util.Map;
 public class TokenController {
 
     private final JwtUtil jwtUtil;
+    private final TokenValidationService tokenValidationService;
+    private final AuthService authService;
 
     @PostMapping("/validate")
     @Operation(summary = "Validate JWT token")
     public ResponseEntity<Map<String, Object>> validateToken(@RequestBody Map<String, String> request) {
-        String token = request.get("token");
-        boolean isValid = jwtUtil.validateToken(token);
+        Optional<ParsedToken> parsed = jwtUtil.tryParse(request.get("token"));
 
         Map<String, Object> response = new LinkedHashMap<>();
-        response.put("valid", isValid);
-
-        try {
-            response.put("userId", isValid ? jwtUtil.extractUserId(token) : null);
-            response.put("userType", isValid ? jwtUtil.extractUserType(token).name() : null);
-        } catch (Exception e) {
-            response.put("userId", null);
-            response.put("userType", null);
-        }
+        response.put("valid", parsed.isPresent());
+        response.put("userId", parsed.map(ParsedToken::getUserId).orElse(null));
+        response.put("userType", parsed.map(ParsedToken::getUserType).map(Enum::name).orElse(null));
 
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/validate/batch")
+    @Operation(summary = "Validate up to 100 JWT tokens in one call")
+    public ResponseEntity<TokenBatchValidationResponse> validateTokens(
+            @Valid @RequestBody TokenBatchValidationRequest request) {
+        return ResponseEntity.ok(new TokenBatchValidationResponse(
+                tokenValidationService.validateAll(request.getTokens())));
+    }
+
+    @PostMapping("/refresh")
+    @Operation(summary = "Exchange a refresh token for new access and refresh tokens")
+    public ResponseEntity<TokenResponse> refreshToken(@Valid @RequestBody RefreshTokenRequest request) {
+        return ResponseEntity.ok(authService.refresh(request));
+    }
+
     @PostMapping("/user-info")
     @Operation(summary = "Get user information from token")
     public ResponseEntity<Map<String, Object>> getUserInfo(@RequestBody Map<String, String> request) {
-        String token = request.get("token");
+        ParsedToken token = jwtUtil.parse(request.get("token"));
 
         Map<String, Object> userInfo = Map.of(
-                "userId", jwtUtil.extractUserId(token),
-                "phone", jwtUtil.extractUsername(token),
-                "userType", jwtUtil.extractUserType(token).name()
+                "userId", token.getUserId(),
+                "phone", token.getPhone(),
+                "userType", token.getUserType().name()
         );
 
         return ResponseEntity.ok(userInfo);
@@ -0,0 +1,19 @@
+package com.togglecover.auth.exception;
+
+/**
+ * Login refused because the account is temporarily locked after repeated
+ * failures; mapped to 423 with a Retry-After header.
+ */
+public class AccountLockedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AccountLockedException(long retryAfterSeconds) {
+        super("Account is temporarily locked after too many failed login attempts");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
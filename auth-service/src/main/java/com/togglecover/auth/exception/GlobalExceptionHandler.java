@@ -0,0 +1,60 @@
+package com.togglecover.auth.exception;
+
+import com.togglecover.auth.dto.ApiResponse;
+import io.jsonwebtoken.JwtException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+@Slf4j
+public class GlobalExceptionHandler {
+
+    @Value("${password.hashing.retry-after-seconds:2}")
+    private int passwordHashingRetryAfterSeconds;
+
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<ApiResponse> handlePasswordHashingBusy(PasswordHashingBusyException ex) {
+        log.warn("Rejected request: {}", ex.getMessage());
+
+        ApiResponse response = ApiResponse.builder()
+                .success(false)
+                .message("Service is busy, please retry shortly")
+                .errorCode("SERVICE_BUSY")
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(passwordHashingRetryAfterSeconds))
+                .body(response);
+    }
+
+    @ExceptionHandler(AccountLockedException.class)
+    public ResponseEntity<ApiResponse> handleAccountLocked(AccountLockedException ex) {
+        ApiResponse response = ApiResponse.builder()
+                .success(false)
+                .message(ex.getMessage())
+                .errorCode("ACCOUNT_LOCKED")
+                .build();
+
+        return ResponseEntity.status(HttpStatus.LOCKED)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
+    @ExceptionHandler(JwtException.class)
+    public ResponseEntity<ApiResponse> handleInvalidToken(JwtException ex) {
+        log.debug("Rejected token: {}", ex.getMessage());
+
+        ApiResponse response = ApiResponse.builder()
+                .success(false)
+                .message("Invalid or expired token")
+                .errorCode("INVALID_TOKEN")
+                .build();
+
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+    }
+}
@@ -0,0 +1,11 @@
+package com.togglecover.auth.exception;
+
+/**
+ * Thrown when the password hashing queue is full; mapped to 503 with a Retry-After header.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -39,6 +39,15 @@ public interface OtpRepository extends JpaRepository<Otp, String> {
     @Query("DELETE FROM Otp o WHERE o.expiresAt < :cutoff")
     void deleteExpiredOtps(@Param("cutoff") LocalDateTime cutoff);
 
+    @Transactional
+    @Modifying
+    @Query("UPDATE Otp o SET o.isUsed = true, o.verifiedAt = :verifiedAt " +
+            "WHERE o.phone = :phone AND o.type = :type AND o.otp = :otp AND o.isUsed = false")
+    int markVerified(@Param("phone") String phone,
+                     @Param("type") OtpType type,
+                     @Param("otp") String otp,
+                     @Param("verifiedAt") LocalDateTime verifiedAt);
+
     @Query("SELECT COUNT(o) FROM Otp o WHERE o.phone = :phone " +
             "AND o.createdAt > :startTime AND o.type = :type")
     Long countRecentOtps(@Param("phone") String phone,
@@ -2,7 +2,11 @@ package com.togglecover.auth.repository;
 
 import com.togglecover.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -10,4 +14,12 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByPhone(String phone);
     boolean existsByPhone(String phone);
+
+    // Only replaces the hash it was computed from, so a concurrent password change wins
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :currentPassword")
+    int replacePasswordHash(@Param("id") String id,
+                            @Param("currentPassword") String currentPassword,
+                            @Param("newPassword") String newPassword);
 }
\ No newline at end of file
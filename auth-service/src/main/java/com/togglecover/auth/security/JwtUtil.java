@@ -1,9 +1,15 @@
 package com.togglecover.auth.security;
 
 import com.togglecover.auth.entity.User;
+import com.togglecover.auth.service.TokenRevocationService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -12,12 +18,19 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtil {
 
+    public static final String ACCESS_TOKEN = "ACCESS";
+    public static final String REFRESH_TOKEN = "REFRESH";
+
+    private final TokenRevocationService revocationService;
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -27,15 +40,21 @@ public class JwtUtil {
     @Value("${jwt.refresh.expiration:2592000000}")
     private Long refreshTokenExpiration;
 
-    // Original method (for backward compatibility)
-    public String generateToken(User user) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("userId", user.getId());
-        claims.put("phone", user.getPhone());
-        claims.put("userType", user.getUserType().name());
-        claims.put("fullName", user.getFullName());
+    // Built once; both are immutable and thread-safe
+    private SecretKey key;
+    private JwtParser parser;
 
-        return createToken(claims, user.getId(), accessTokenExpiration);
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+    }
+
+    // Each login without an explicit session starts a new one, so it can be revoked on its own
+    public String generateToken(User user) {
+        return generateToken(user, UUID.randomUUID().toString(), null);
     }
 
     // New method with session support
@@ -47,100 +66,136 @@ public class JwtUtil {
         claims.put("fullName", user.getFullName());
         claims.put("sessionId", sessionId);
         claims.put("deviceId", deviceId != null ? deviceId : "unknown");
-        claims.put("tokenType", "ACCESS");
+        claims.put("tokenType", ACCESS_TOKEN);
 
         return createToken(claims, user.getId(), accessTokenExpiration);
     }
 
     public String generateRefreshToken(User user, String sessionId) {
+        return generateRefreshToken(user, sessionId, UUID.randomUUID().toString());
+    }
+
+    // Refresh rotation needs the jti up front to record it as the session's current token
+    public String generateRefreshToken(User user, String sessionId, String jti) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", user.getId());
         claims.put("sessionId", sessionId);
-        claims.put("tokenType", "REFRESH");
-        claims.put("jti", UUID.randomUUID().toString());
+        claims.put("tokenType", REFRESH_TOKEN);
 
-        return createToken(claims, user.getId(), refreshTokenExpiration);
+        return createToken(claims, user.getId(), refreshTokenExpiration, jti);
     }
 
     private String createToken(Map<String, Object> claims, String subject, Long expiration) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        return createToken(claims, subject, expiration, UUID.randomUUID().toString());
+    }
 
+    private String createToken(Map<String, Object> claims, String subject, Long expiration, String jti) {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(jti)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(key)
                 .compact();
     }
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    /**
+     * Verifies the access token's signature, expiry and revocation once and returns its claims.
+     *
+     * @throws JwtException if the token is malformed, badly signed, expired, revoked
+     *                      or not an access token
+     */
+    public ParsedToken parse(String token) {
+        return parse(token, ACCESS_TOKEN);
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    /**
+     * Like {@link #parse(String)}, but empty instead of throwing for a missing,
+     * invalid or revoked token, or one that is not an access token.
+     */
+    public Optional<ParsedToken> tryParse(String token) {
+        return tryParse(token, ACCESS_TOKEN);
     }
 
-    private Claims extractAllClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    /**
+     * Like {@link #tryParse(String)} for refresh tokens, which are only good
+     * for {@code /refresh} and are rejected everywhere else.
+     */
+    public Optional<ParsedToken> tryParseRefreshToken(String token) {
+        return tryParse(token, REFRESH_TOKEN);
+    }
+
+    private ParsedToken parse(String token, String tokenType) {
+        ParsedToken parsed = new ParsedToken(parser.parseClaimsJws(token).getBody());
+        if (!isOfType(parsed, tokenType)) {
+            throw new UnsupportedJwtException("Expected an " + tokenType + " token");
+        }
+        if (revocationService.isRevoked(parsed)) {
+            throw new RevokedTokenException("Token has been revoked");
+        }
+        return parsed;
+    }
+
+    // Access tokens issued before tokenType was added have none. They are taken as access
+    // tokens until they have all expired, one jwt.expiration after rollout; refresh tokens
+    // always carried the claim.
+    private static boolean isOfType(ParsedToken parsed, String tokenType) {
+        String actual = parsed.getTokenType();
+        return tokenType.equals(actual) || (actual == null && ACCESS_TOKEN.equals(tokenType));
+    }
+
+    private Optional<ParsedToken> tryParse(String token, String tokenType) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            ParsedToken parsed = parse(token, tokenType);
+            // The parser rejects expired tokens but accepts ones without an expiry
+            return parsed.getExpiration() != null ? Optional.of(parsed) : Optional.empty();
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public Date extractExpiration(String token) {
+        return parse(token).getExpiration();
+    }
+
+    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+        return claimsResolver.apply(parse(token).getClaims());
     }
 
     public String extractUserId(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parse(token).getUserId();
     }
 
     public String extractUsername(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("phone", String.class);
+        return parse(token).getPhone();
     }
 
     public String extractSessionId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("sessionId", String.class);
+        return parse(token).getSessionId();
     }
 
     public String extractDeviceId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("deviceId", String.class);
+        return parse(token).getDeviceId();
     }
 
     public String extractTokenType(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("tokenType", String.class);
+        return parse(token).getTokenType();
     }
 
     public User.UserType extractUserType(String token) {
-        Claims claims = extractAllClaims(token);
-        String userTypeStr = claims.get("userType", String.class);
-        return User.UserType.valueOf(userTypeStr);
+        return parse(token).getUserType();
     }
 
     public Boolean validateToken(String token) {
-        try {
-            SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
-        }
+        return tryParse(token).isPresent();
     }
 
     public Map<String, Object> debugToken(String token) {
-        Claims claims = extractAllClaims(token);
+        Claims claims = parse(token).getClaims();
         Map<String, Object> debugInfo = new HashMap<>();
         debugInfo.put("subject", claims.getSubject());
         debugInfo.put("allClaims", claims);
@@ -0,0 +1,65 @@
+package com.togglecover.auth.security;
+
+import com.togglecover.auth.entity.User;
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+/**
+ * A token whose signature and expiry have been verified, with its claims.
+ * Obtained from {@link JwtUtil#parse(String)} so callers needing several
+ * claims verify the token once.
+ */
+public final class ParsedToken {
+
+    private final Claims claims;
+
+    ParsedToken(Claims claims) {
+        this.claims = claims;
+    }
+
+    public String getUserId() {
+        return claims.getSubject();
+    }
+
+    public String getPhone() {
+        return claims.get("phone", String.class);
+    }
+
+    public User.UserType getUserType() {
+        String userType = claims.get("userType", String.class);
+        return userType != null ? User.UserType.valueOf(userType) : null;
+    }
+
+    public String getFullName() {
+        return claims.get("fullName", String.class);
+    }
+
+    public String getSessionId() {
+        return claims.get("sessionId", String.class);
+    }
+
+    public String getDeviceId() {
+        return claims.get("deviceId", String.class);
+    }
+
+    public String getTokenType() {
+        return claims.get("tokenType", String.class);
+    }
+
+    public String getJti() {
+        return claims.getId();
+    }
+
+    public Date getIssuedAt() {
+        return claims.getIssuedAt();
+    }
+
+    public Date getExpiration() {
+        return claims.getExpiration();
+    }
+
+    public Claims getClaims() {
+        return claims;
+    }
+}
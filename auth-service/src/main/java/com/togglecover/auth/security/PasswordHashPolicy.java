@@ -0,0 +1,93 @@
+package com.togglecover.auth.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Decides how passwords are hashed on this deployment. Hashes are stored as
+ * {@code {bcrypt}$2a$<cost>$...}, recording both algorithm and cost, so the
+ * cost can change without invalidating existing hashes. Unless
+ * {@code password.hashing.bcrypt-cost} pins it, the cost is calibrated at
+ * startup to the one whose hash time is closest to
+ * {@code password.hashing.target-millis}.
+ */
+@Component
+@Slf4j
+public class PasswordHashPolicy {
+
+    private static final String BCRYPT_ID = "bcrypt";
+    private static final String BCRYPT_PREFIX = "{" + BCRYPT_ID + "}";
+    private static final int PROBE_COST = 10;
+
+    private final int bcryptCost;
+
+    public PasswordHashPolicy(@Value("${password.hashing.bcrypt-cost:0}") int configuredCost,
+                              @Value("${password.hashing.target-millis:250}") long targetMillis,
+                              @Value("${password.hashing.min-cost:10}") int minCost,
+                              @Value("${password.hashing.max-cost:16}") int maxCost) {
+        if (configuredCost > 0) {
+            this.bcryptCost = configuredCost;
+            log.info("BCrypt cost {} (configured)", bcryptCost);
+        } else {
+            this.bcryptCost = calibrate(targetMillis, minCost, maxCost);
+        }
+    }
+
+    public int getBcryptCost() {
+        return bcryptCost;
+    }
+
+    public PasswordEncoder createEncoder() {
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(BCRYPT_ID,
+                Map.of(BCRYPT_ID, new BCryptPasswordEncoder(bcryptCost)));
+        // Hashes stored before the {id} prefix was introduced are plain bcrypt
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
+    }
+
+    /**
+     * True if the stored hash was made with another algorithm or cost than this
+     * deployment's, in either direction.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith(BCRYPT_PREFIX)) {
+            return true;
+        }
+        // {bcrypt}$2a$12$<salt+hash>
+        String[] parts = encodedPassword.substring(BCRYPT_PREFIX.length()).split("\\$", 4);
+        try {
+            return parts.length < 4 || Integer.parseInt(parts[2]) != bcryptCost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static int calibrate(long targetMillis, int minCost, int maxCost) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(PROBE_COST);
+        probe.encode("calibration");
+
+        // Best of a few runs: other startup work only ever makes a run slower
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration");
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+
+        // Each cost step doubles the work
+        double probeMillis = bestNanos / 1_000_000.0;
+        int cost = PROBE_COST + (int) Math.round(Math.log(targetMillis / probeMillis) / Math.log(2));
+        cost = Math.max(minCost, Math.min(maxCost, cost));
+
+        log.info("BCrypt cost {} calibrated for a {} ms target (cost {} took {} ms, so about {} ms per hash)",
+                cost, targetMillis, PROBE_COST, Math.round(probeMillis),
+                Math.round(probeMillis * Math.pow(2, cost - PROBE_COST)));
+        return cost;
+    }
+}
@@ -0,0 +1,13 @@
+package com.togglecover.auth.security;
+
+import io.jsonwebtoken.JwtException;
+
+/**
+ * A correctly signed, unexpired token whose jti, session or user has been revoked.
+ */
+public class RevokedTokenException extends JwtException {
+
+    public RevokedTokenException(String message) {
+        super(message);
+    }
+}
@@ -4,10 +4,11 @@ import com.togglecover.auth.dto.*;
 import com.togglecover.auth.entity.User;
 import com.togglecover.auth.repository.UserRepository;
 import com.togglecover.auth.security.JwtUtil;
+import com.togglecover.auth.security.ParsedToken;
+import com.togglecover.auth.security.PasswordHashPolicy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,15 +18,17 @@ import org.springframework.transaction.annotation.Transactional;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final PasswordHashPolicy passwordHashPolicy;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService revocationService;
+    private final RefreshTokenService refreshTokenService;
+    private final LoginLockoutService loginLockoutService;
+    private final RiskEngineService riskEngineService;
 
     @Value("${jwt.secret}")
     private String jwtSecret;
 
-    @Value("${jwt.expiration}")
-    private Long jwtExpiration;
-
     @Transactional
     public AuthResponse register(RegisterRequest request) {
         if (userRepository.existsByPhone(request.getPhone())) {
@@ -34,7 +37,7 @@ public class AuthService {
 
         User user = User.builder()
                 .phone(request.getPhone())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(passwordHashingService.encode(request.getPassword()))
                 .fullName(request.getFullName())
                 .email(request.getEmail())
                 .city(request.getCity())
@@ -44,41 +47,42 @@ public class AuthService {
 
         user = userRepository.save(user);
 
-        String token = jwtUtil.generateToken(user);
-
-        return AuthResponse.builder()
-                .token(token)
-                .userId(user.getId())
-                .phone(user.getPhone())
-                .fullName(user.getFullName())
-                .userType(user.getUserType())
-                .expiresIn(jwtExpiration)
-                .build();
+        return authResponse(user, refreshTokenService.startSession(user, null));
     }
 
-    @Transactional
+    // No surrounding transaction: the lookup is a single read, the rehash writes through
+    // replacePasswordHash's own, and the session lives in Redis
     public AuthResponse login(AuthRequest request) {
-        User user = userRepository.findByPhone(request.getPhone())
-                .orElseThrow(() -> new RuntimeException("Invalid credentials"));
+        // Locked phones are refused before any database or bcrypt work
+        loginLockoutService.checkNotLocked(request.getPhone());
 
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        User user = userRepository.findByPhone(request.getPhone()).orElse(null);
+        if (user == null) {
+            riskEngineService.recordFailedLoginAttempt(request.getPhone());
             throw new RuntimeException("Invalid credentials");
         }
 
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
+            riskEngineService.recordFailedLoginAttempt(request.getPhone());
+            throw new RuntimeException("Invalid credentials");
+        }
+        loginLockoutService.recordSuccess(request.getPhone());
+
+        if (passwordHashPolicy.needsRehash(user.getPassword())) {
+            String userId = user.getId();
+            String currentHash = user.getPassword();
+            passwordHashingService.encodeInBackground(request.getPassword(), newHash -> {
+                if (userRepository.replacePasswordHash(userId, currentHash, newHash) == 1) {
+                    log.info("Rehashed password for user {} at the current cost", userId);
+                }
+            });
+        }
+
         if (user.getStatus() != User.UserStatus.ACTIVE) {
             throw new RuntimeException("Account is not active");
         }
 
-        String token = jwtUtil.generateToken(user);
-
-        return AuthResponse.builder()
-                .token(token)
-                .userId(user.getId())
-                .phone(user.getPhone())
-                .fullName(user.getFullName())
-                .userType(user.getUserType())
-                .expiresIn(jwtExpiration)
-                .build();
+        return authResponse(user, refreshTokenService.startSession(user, null));
     }
 
     @Transactional
@@ -90,15 +94,50 @@ public class AuthService {
         // OTP verification is handled by OtpService.verifyOtpForPasswordReset()
 
         // Update password
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        user.setPassword(passwordHashingService.encode(request.getNewPassword()));
         userRepository.save(user);
 
+        // Sign out everywhere: tokens issued under the old password stop working
+        revocationService.revokeAllForUser(user.getId());
+
         return ApiResponse.builder()
                 .success(true)
                 .message("Password reset successful")
                 .build();
     }
 
+    public ApiResponse logout(String token) {
+        ParsedToken parsed = jwtUtil.parse(token);
+
+        revocationService.revokeToken(parsed);
+        if (parsed.getSessionId() != null) {
+            revocationService.revokeSession(parsed.getSessionId());
+            refreshTokenService.endSession(parsed.getSessionId());
+        }
+
+        return ApiResponse.builder()
+                .success(true)
+                .message("Logged out successfully")
+                .build();
+    }
+
+    public TokenResponse refresh(RefreshTokenRequest request) {
+        return refreshTokenService.refresh(request.getRefreshToken());
+    }
+
+    static AuthResponse authResponse(User user, TokenResponse tokens) {
+        return AuthResponse.builder()
+                .token(tokens.getAccessToken())
+                .accessToken(tokens.getAccessToken())
+                .refreshToken(tokens.getRefreshToken())
+                .userId(user.getId())
+                .phone(user.getPhone())
+                .fullName(user.getFullName())
+                .userType(user.getUserType())
+                .expiresIn(tokens.getExpiresIn())
+                .build();
+    }
+
     public boolean validateToken(String token) {
         try {
             return jwtUtil.validateToken(token);
@@ -0,0 +1,99 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.exception.AccountLockedException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-phone login lockout kept entirely in Redis, checked before the user
+ * lookup and bcrypt so guesses against a locked account cost one Redis call.
+ * Failures count in {@code failed:login:<phone>}; reaching
+ * {@code security.max-failed-attempts} sets {@code lock:login:<phone>}, which
+ * expires after {@code security.account.lockout.minutes}, and restarts the
+ * count.
+ *
+ * <p>The same script counts failures for the risk engine in
+ * {@link #RECENT_FAILURES_KEY_PREFIX}, over a sliding hour. That count is
+ * cleared neither by a lock nor by a successful login, so failures spread
+ * over more than one lockout still add up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoginLockoutService {
+
+    /** Failed logins in the last hour per phone, read by the risk engine. */
+    public static final String RECENT_FAILURES_KEY_PREFIX = "risk:failed:login:";
+
+    static final String FAILED_KEY_PREFIX = "failed:login:";
+    private static final String LOCK_KEY_PREFIX = "lock:login:";
+    private static final long RECENT_FAILURES_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // KEYS: attempts, lock, recent failures. ARGV: max attempts, lockout millis (also the
+    // counting window), recent failures window millis. Returns the attempt count.
+    private static final RedisScript<Long> RECORD_FAILURE_SCRIPT = RedisScript.of(
+            "redis.call('INCR', KEYS[3]) " +
+                    "redis.call('PEXPIRE', KEYS[3], ARGV[3]) " +
+                    "local attempts = redis.call('INCR', KEYS[1]) " +
+                    "if attempts == 1 then redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+                    "if attempts >= tonumber(ARGV[1]) then " +
+                    "  redis.call('SET', KEYS[2], attempts, 'PX', ARGV[2]) " +
+                    "  redis.call('DEL', KEYS[1]) " +
+                    "end " +
+                    "return attempts",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${security.max-failed-attempts:5}")
+    private int maxFailedAttempts;
+
+    @Value("${security.account.lockout.minutes:30}")
+    private long lockoutMinutes;
+
+    /**
+     * @throws AccountLockedException if the phone is locked out
+     */
+    public void checkNotLocked(String phone) {
+        Long remainingMillis;
+        try {
+            remainingMillis = redisTemplate.getExpire(LOCK_KEY_PREFIX + phone, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Best effort: Redis being down must not block every login
+            log.warn("Lockout check unavailable for {}: {}", phone, e.getMessage());
+            return;
+        }
+        if (remainingMillis != null && remainingMillis > 0) {
+            throw new AccountLockedException((remainingMillis + 999) / 1000);
+        }
+    }
+
+    public void recordFailure(String phone) {
+        try {
+            Long attempts = redisTemplate.execute(RECORD_FAILURE_SCRIPT,
+                    List.of(FAILED_KEY_PREFIX + phone, LOCK_KEY_PREFIX + phone, RECENT_FAILURES_KEY_PREFIX + phone),
+                    String.valueOf(maxFailedAttempts), String.valueOf(lockoutMinutes * 60_000),
+                    String.valueOf(RECENT_FAILURES_WINDOW_MILLIS));
+            if (attempts != null && attempts >= maxFailedAttempts) {
+                log.warn("Login locked for {} after {} failed attempts", phone, attempts);
+            }
+        } catch (Exception e) {
+            log.warn("Could not record failed login for {}: {}", phone, e.getMessage());
+        }
+    }
+
+    public void recordSuccess(String phone) {
+        try {
+            redisTemplate.delete(FAILED_KEY_PREFIX + phone);
+        } catch (Exception e) {
+            log.warn("Could not reset failed logins for {}: {}", phone, e.getMessage());
+        }
+    }
+}
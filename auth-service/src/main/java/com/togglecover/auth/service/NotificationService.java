@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -23,33 +25,45 @@ public class NotificationService {
     @Value("${twilio.enabled:true}")
     private boolean twilioEnabled;
 
-    public boolean sendOtp(String phone, String otp, OtpType otpType) {
-        String message = generateOtpMessage(otp, otpType);
+    /**
+     * True when OTPs go out over WhatsApp, false for SMS. WhatsApp falls back to
+     * SMS while Twilio is disabled.
+     */
+    public boolean usesWhatsApp() {
+        if (!"whatsapp".equalsIgnoreCase(deliveryMethod)) {
+            return false;
+        }
+        if (!twilioEnabled) {
+            log.warn("WhatsApp service is disabled, falling back to SMS");
+            return false;
+        }
+        return true;
+    }
 
-        // Log OTP for demo purposes (ALWAYS log in development)
-        log.info("OTP for {} ({}): {}", phone, otpType, otp);
+    /**
+     * Sends the OTPs as a single SMS batch.
+     */
+    public boolean sendOtpSms(List<OtpDelivery> deliveries) {
+        deliveries.forEach(this::logOtp);
 
-        try {
-            switch (deliveryMethod.toLowerCase()) {
-                case "whatsapp":
-                    if (twilioEnabled) {
-                        return whatsAppService.sendOTP(phone, otp);
-                    }
-                    log.warn("WhatsApp service is disabled, falling back to SMS");
-                    // Fall through to SMS
-                case "sms":
-                default:
-                    if (msg91Enabled) {
-                        return smsService.sendOTP(phone, otp, getTemplateId(otpType));
-                    }
-                    log.warn("SMS service is disabled");
-                    return true; // Return true for demo mode
-            }
-        } catch (Exception e) {
-            log.error("Failed to send OTP to {}: {}", phone, e.getMessage());
-            // In demo/development mode, we still consider it successful
-            return true;
+        if (!msg91Enabled) {
+            log.warn("SMS service is disabled");
+            return true; // Return true for demo mode
         }
+        return smsService.sendSMSBatch(deliveries.stream()
+                .map(delivery -> new SMSService.Sms(delivery.phone(),
+                        generateOtpMessage(delivery.code(), delivery.type())))
+                .toList());
+    }
+
+    public boolean sendOtpWhatsApp(OtpDelivery delivery) {
+        logOtp(delivery);
+        return whatsAppService.sendOTP(delivery.phone(), delivery.code());
+    }
+
+    private void logOtp(OtpDelivery delivery) {
+        // Log OTP for demo purposes (ALWAYS log in development)
+        log.info("OTP for {} ({}): {}", delivery.phone(), delivery.type(), delivery.code());
     }
 
     private String generateOtpMessage(String otp, OtpType otpType) {
@@ -64,17 +78,4 @@ public class NotificationService {
                 return String.format("Your ToggleCover OTP is %s.", otp);
         }
     }
-
-    private String getTemplateId(OtpType otpType) {
-        switch (otpType) {
-            case LOGIN:
-                return "login_otp_template";
-            case PASSWORD_RESET:
-                return "reset_password_template";
-            case ACCOUNT_VERIFICATION:
-                return "account_verification_template";
-            default:
-                return "default_otp_template";
-        }
-    }
-}
\ No newline at end of file
+}
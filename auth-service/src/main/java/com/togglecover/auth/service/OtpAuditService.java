@@ -0,0 +1,86 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.entity.Otp;
+import com.togglecover.auth.entity.OtpType;
+import com.togglecover.auth.repository.OtpRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional Postgres copy of issued and verified OTPs ({@code otp.audit.enabled}).
+ * Active OTPs live in {@link OtpStore}; rows here are written asynchronously,
+ * hold the code's HMAC rather than the code, and are never read on the
+ * verification path.
+ */
+@Service
+@Slf4j
+public class OtpAuditService {
+
+    private final OtpRepository otpRepository;
+    private final ThreadPoolTaskExecutor executor;
+
+    @Value("${otp.audit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${otp.audit.retention-days:30}")
+    private int retentionDays;
+
+    public OtpAuditService(OtpRepository otpRepository,
+                           @Qualifier("otpAuditExecutor") ThreadPoolTaskExecutor executor) {
+        this.otpRepository = otpRepository;
+        this.executor = executor;
+    }
+
+    public void recordIssued(String phone, OtpType type, String codeHash, LocalDateTime expiresAt) {
+        submit(() -> otpRepository.save(Otp.builder()
+                .phone(phone)
+                .otp(codeHash)
+                .type(type)
+                .expiresAt(expiresAt)
+                .retryCount(0)
+                .isUsed(false)
+                .build()));
+    }
+
+    public void recordVerified(String phone, OtpType type, String codeHash) {
+        LocalDateTime now = LocalDateTime.now();
+        submit(() -> otpRepository.markVerified(phone, type, codeHash, now));
+    }
+
+    /**
+     * Drops audit rows past retention, along with any rows left from when OTPs
+     * were verified against this table.
+     */
+    @Scheduled(fixedDelayString = "${otp.audit.cleanup-interval-ms:3600000}")
+    public void deleteExpired() {
+        try {
+            otpRepository.deleteExpiredOtps(LocalDateTime.now().minusDays(retentionDays));
+        } catch (Exception e) {
+            log.warn("OTP audit cleanup failed: {}", e.getMessage());
+        }
+    }
+
+    private void submit(Runnable write) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    write.run();
+                } catch (Exception e) {
+                    log.warn("OTP audit write failed: {}", e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("OTP audit queue full, dropping record");
+        }
+    }
+}
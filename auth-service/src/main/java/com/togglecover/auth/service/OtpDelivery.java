@@ -0,0 +1,14 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.entity.OtpType;
+
+/**
+ * An OTP waiting in the outbox to be sent; {@code recordId} is its stream entry.
+ */
+public record OtpDelivery(String recordId, String otpId, String phone, OtpType type, String code,
+                          long expiresAtMillis) {
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAtMillis;
+    }
+}
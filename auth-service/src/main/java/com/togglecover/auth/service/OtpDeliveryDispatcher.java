@@ -0,0 +1,316 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.entity.OtpType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends the OTPs queued in the {@link OtpStore#OUTBOX_KEY} stream, so sending
+ * an OTP never waits on MSG91 or Twilio. Each instance reads the stream as a
+ * member of one consumer group and collects entries into micro-batches: SMS
+ * go out as one MSG91 request per batch, WhatsApp messages one call each.
+ * Calls per provider are capped, failed sends are retried with exponential
+ * backoff, and an entry is removed from the stream once it is sent, given up
+ * on or expired.
+ *
+ * <p>Entries read by an instance that died before finishing them are claimed
+ * by the others once idle for {@code otp.outbox.reclaim-idle-ms}, so delivery
+ * is at least once. Reclaiming is done by the poller between reads, so waiting
+ * for a provider slot never holds up the shared scheduler thread.
+ */
+@Service
+@Slf4j
+public class OtpDeliveryDispatcher {
+
+    private static final String GROUP = "otp-dispatchers";
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final NotificationService notificationService;
+    private final ThreadPoolTaskExecutor executor;
+    private final Semaphore msg91Permits;
+    private final Semaphore twilioPermits;
+    private final String consumerName = "auth-" + UUID.randomUUID();
+
+    @Value("${otp.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${otp.outbox.linger-ms:20}")
+    private long lingerMillis;
+
+    @Value("${otp.outbox.poll-timeout-ms:2000}")
+    private long pollTimeoutMillis;
+
+    @Value("${otp.outbox.reclaim-idle-ms:60000}")
+    private long reclaimIdleMillis;
+
+    @Value("${otp.outbox.reclaim-interval-ms:30000}")
+    private long reclaimIntervalMillis;
+
+    @Value("${otp.delivery.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${otp.delivery.initial-backoff-ms:500}")
+    private long initialBackoffMillis;
+
+    @Value("${otp.delivery.max-backoff-ms:5000}")
+    private long maxBackoffMillis;
+
+    private volatile boolean running;
+    private volatile boolean groupReady;
+    private Thread poller;
+
+    public OtpDeliveryDispatcher(StringRedisTemplate redisTemplate,
+                                 NotificationService notificationService,
+                                 @Qualifier("otpDeliveryExecutor") ThreadPoolTaskExecutor executor,
+                                 @Value("${otp.delivery.msg91.max-concurrency:4}") int msg91Concurrency,
+                                 @Value("${otp.delivery.twilio.max-concurrency:8}") int twilioConcurrency) {
+        this.redisTemplate = redisTemplate;
+        this.notificationService = notificationService;
+        this.executor = executor;
+        this.msg91Permits = new Semaphore(msg91Concurrency);
+        this.twilioPermits = new Semaphore(twilioConcurrency);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        poller = Thread.ofPlatform().name("otp-outbox-poller").daemon().start(this::poll);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+
+    /**
+     * Takes over entries another consumer read but never finished.
+     */
+    private void reclaimStalled() throws InterruptedException {
+        try {
+            Duration minIdle = Duration.ofMillis(reclaimIdleMillis);
+            RecordId[] stalled = streams().pending(OtpStore.OUTBOX_KEY, GROUP, Range.unbounded(), batchSize).stream()
+                    .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                    .map(PendingMessage::getId)
+                    .toArray(RecordId[]::new);
+            if (stalled.length == 0) {
+                return;
+            }
+
+            List<MapRecord<String, Object, Object>> claimed =
+                    streams().claim(OtpStore.OUTBOX_KEY, GROUP, consumerName, minIdle, stalled);
+            log.info("Reclaimed {} stalled OTP deliveries", claimed.size());
+            dispatch(claimed);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("OTP outbox reclaim failed: {}", e.getMessage());
+        }
+    }
+
+    private void poll() {
+        long nextReclaimNanos = System.nanoTime();
+        while (running) {
+            try {
+                if (!groupReady) {
+                    createGroup();
+                }
+                if (System.nanoTime() - nextReclaimNanos >= 0) {
+                    reclaimStalled();
+                    nextReclaimNanos = System.nanoTime() + Duration.ofMillis(reclaimIntervalMillis).toNanos();
+                }
+
+                List<MapRecord<String, Object, Object>> records = read(batchSize, Duration.ofMillis(pollTimeoutMillis));
+                // Give a burst a moment to fill the batch
+                if (!records.isEmpty() && records.size() < batchSize && lingerMillis > 0) {
+                    Thread.sleep(lingerMillis);
+                    records = new ArrayList<>(records);
+                    records.addAll(read(batchSize - records.size(), null));
+                }
+                dispatch(records);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                // Also recovers from the stream having been deleted along with the group
+                groupReady = false;
+                log.warn("OTP outbox poll failed, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(ERROR_BACKOFF_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void createGroup() {
+        try {
+            streams().createGroup(OtpStore.OUTBOX_KEY, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            if (message == null || !message.contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+        groupReady = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(int count, Duration block) {
+        StreamReadOptions options = StreamReadOptions.empty().count(count);
+        if (block != null) {
+            options = options.block(block);
+        }
+        List<MapRecord<String, Object, Object>> records = streams().read(Consumer.from(GROUP, consumerName), options,
+                StreamOffset.create(OtpStore.OUTBOX_KEY, ReadOffset.lastConsumed()));
+        return records != null ? records : List.of();
+    }
+
+    void dispatch(List<MapRecord<String, Object, Object>> records) throws InterruptedException {
+        List<OtpDelivery> pending = new ArrayList<>(records.size());
+        List<String> dropped = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            OtpDelivery delivery = toDelivery(record);
+            if (delivery == null || delivery.isExpired()) {
+                dropped.add(record.getId().getValue());
+            } else {
+                pending.add(delivery);
+            }
+        }
+        if (!dropped.isEmpty()) {
+            log.debug("Dropping {} expired or malformed OTP deliveries", dropped.size());
+            complete(dropped);
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        if (notificationService.usesWhatsApp()) {
+            for (OtpDelivery delivery : pending) {
+                submit(twilioPermits, List.of(delivery), () -> notificationService.sendOtpWhatsApp(delivery));
+            }
+        } else {
+            submit(msg91Permits, pending, () -> notificationService.sendOtpSms(pending));
+        }
+    }
+
+    /**
+     * Runs the send once the provider has a free slot; blocks the caller, and so
+     * the reading of more entries, until it does.
+     */
+    private void submit(Semaphore permits, List<OtpDelivery> deliveries, BooleanSupplier send)
+            throws InterruptedException {
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    deliver(deliveries, send);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Left pending in the stream, to be reclaimed
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void deliver(List<OtpDelivery> deliveries, BooleanSupplier send) {
+        boolean interrupted = false;
+        try {
+            long backoffMillis = initialBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                boolean sent;
+                try {
+                    sent = send.getAsBoolean();
+                } catch (Exception e) {
+                    log.warn("OTP delivery attempt {} failed: {}", attempt, e.getMessage());
+                    sent = false;
+                }
+                if (sent) {
+                    return;
+                }
+                if (attempt >= maxAttempts || deliveries.stream().allMatch(OtpDelivery::isExpired)) {
+                    log.error("Giving up on {} OTP deliveries after {} attempts", deliveries.size(), attempt);
+                    return;
+                }
+
+                Thread.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+            }
+        } catch (InterruptedException e) {
+            // Shutting down: left pending in the stream, to be reclaimed
+            interrupted = true;
+            Thread.currentThread().interrupt();
+        } finally {
+            // Sent or given up on, the entry goes either way; it holds the code
+            if (!interrupted) {
+                complete(deliveries.stream().map(OtpDelivery::recordId).toList());
+            }
+        }
+    }
+
+    private void complete(List<String> ids) {
+        String[] recordIds = ids.toArray(String[]::new);
+        try {
+            streams().acknowledge(OtpStore.OUTBOX_KEY, GROUP, recordIds);
+            // Entries hold the code, so they go as soon as they are done with
+            streams().delete(OtpStore.OUTBOX_KEY, recordIds);
+        } catch (Exception e) {
+            log.warn("Failed to remove {} OTP deliveries from the outbox: {}", recordIds.length, e.getMessage());
+        }
+    }
+
+    private static OtpDelivery toDelivery(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> fields = record.getValue();
+        try {
+            return new OtpDelivery(record.getId().getValue(),
+                    (String) fields.get("otpId"),
+                    (String) fields.get("phone"),
+                    OtpType.valueOf((String) fields.get("type")),
+                    (String) fields.get("code"),
+                    Long.parseLong((String) fields.get("expiresAt")));
+        } catch (RuntimeException e) {
+            log.warn("Malformed OTP outbox entry {}: {}", record.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private StreamOperations<String, Object, Object> streams() {
+        return redisTemplate.opsForStream();
+    }
+}
@@ -3,30 +3,34 @@ package com.togglecover.auth.service;
 import com.togglecover.auth.dto.AuthResponse;
 import com.togglecover.auth.dto.OtpResponse;
 import com.togglecover.auth.dto.VerifyOtpRequest;
-import com.togglecover.auth.entity.Otp;
 import com.togglecover.auth.entity.OtpType;
 import com.togglecover.auth.entity.User;
-import com.togglecover.auth.repository.OtpRepository;
 import com.togglecover.auth.repository.UserRepository;
-import com.togglecover.auth.security.JwtUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OtpService {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final UserRepository userRepository;
-    private final OtpRepository otpRepository;
-    private final JwtUtil jwtUtil;
-    private final NotificationService notificationService;
+    private final OtpStore otpStore;
+    private final OtpAuditService otpAuditService;
+    private final RefreshTokenService refreshTokenService;
 
     @Value("${otp.length:6}")
     private Integer otpLength;
@@ -37,57 +41,68 @@ public class OtpService {
     @Value("${otp.max.retries:3}")
     private Integer maxRetries;
 
-    @Transactional
-    public OtpResponse sendOtp(String phone, OtpType otpType) {
-        // Generate OTP
-        String otpCode = generateOtp();
+    @Value("${otp.resend.cooldown:60}")
+    private Integer resendCooldownSeconds;
 
-        // Save OTP to database
-        Otp otp = Otp.builder()
-                .phone(phone)
-                .otp(otpCode)
-                .type(otpType)
-                .expiresAt(LocalDateTime.now().plusMinutes(otpExpirationMinutes))
-                .retryCount(0)
-                .isUsed(false)
-                .build();
+    private final ConcurrentMap<String, CompletableFuture<OtpResponse>> sendsInFlight = new ConcurrentHashMap<>();
 
-        otp = otpRepository.save(otp);
+    /**
+     * Issues and sends an OTP, or, within {@code otp.resend.cooldown} of the
+     * last one, returns that one instead. Concurrent calls for the same phone
+     * and type on this instance share a single call.
+     */
+    public OtpResponse sendOtp(String phone, OtpType otpType) {
+        String flightKey = otpType + ":" + phone;
+        CompletableFuture<OtpResponse> call = new CompletableFuture<>();
+        CompletableFuture<OtpResponse> inFlight = sendsInFlight.putIfAbsent(flightKey, call);
+        if (inFlight != null) {
+            try {
+                return inFlight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
 
-        // Send OTP via SMS/WhatsApp
-        boolean sent = notificationService.sendOtp(phone, otpCode, otpType);
+        try {
+            OtpResponse response = issueOtp(phone, otpType);
+            call.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            sendsInFlight.remove(flightKey, call);
+        }
+    }
 
-        if (!sent) {
-            throw new RuntimeException("Failed to send OTP");
+    private OtpResponse issueOtp(String phone, OtpType otpType) {
+        String otpCode = generateOtp();
+        Duration ttl = Duration.ofMinutes(otpExpirationMinutes);
+
+        // Replaces any earlier OTP of this type for the phone and queues it for
+        // OtpDeliveryDispatcher to send over SMS/WhatsApp
+        OtpStore.Issue issue = otpStore.issue(UUID.randomUUID().toString(), phone, otpType, otpCode,
+                maxRetries, ttl, Duration.ofSeconds(resendCooldownSeconds));
+
+        if (issue.issued()) {
+            otpAuditService.recordIssued(phone, otpType, otpStore.hash(phone, otpType, otpCode),
+                    LocalDateTime.now().plus(ttl));
+        } else {
+            log.debug("OTP resend for {} ({}) within cooldown, {} ms left",
+                    maskPhoneNumber(phone), otpType, issue.retryAfter().toMillis());
         }
 
         return OtpResponse.builder()
-                .message("OTP sent successfully")
-                .otpId(otp.getId())
+                .message(issue.issued() ? "OTP sent successfully" : "OTP already sent")
+                .otpId(issue.otpId())
+                .retryAfter((int) Math.ceil(issue.retryAfter().toMillis() / 1000.0))
+                .maxRetries(maxRetries)
                 .maskedPhone(maskPhoneNumber(phone))
                 .build();
     }
 
-    @Transactional
     public AuthResponse verifyOtp(VerifyOtpRequest request) {
-        // Find valid OTP
-        Otp otp = otpRepository.findValidOtp(
-                        request.getPhone(),
-                        request.getOtp(),
-                        OtpType.LOGIN,
-                        LocalDateTime.now()
-                )
-                .orElseThrow(() -> new RuntimeException("Invalid or expired OTP"));
-
-        // Check retry count
-        if (otp.getRetryCount() >= maxRetries) {
-            throw new RuntimeException("Maximum retry attempts exceeded");
-        }
-
-        // Mark OTP as used
-        otp.setUsed(true);
-        otp.setVerifiedAt(LocalDateTime.now());
-        otpRepository.save(otp);
+        consumeOtp(request.getPhone(), OtpType.LOGIN, request.getOtp());
 
         // Find user and generate token
         User user = userRepository.findByPhone(request.getPhone())
@@ -97,39 +112,28 @@ public class OtpService {
             throw new RuntimeException("Account is not active");
         }
 
-        String token = jwtUtil.generateToken(user);
-
-        return AuthResponse.builder()
-                .token(token)
-                .userId(user.getId())
-                .phone(user.getPhone())
-                .fullName(user.getFullName())
-                .userType(user.getUserType())
-                .expiresIn(86400000L) // 24 hours
-                .build();
+        return AuthService.authResponse(user, refreshTokenService.startSession(user, null));
     }
 
-    @Transactional
     public void verifyOtpForPasswordReset(String phone, String otpCode) {
-        Otp otp = otpRepository.findValidOtp(
-                        phone,
-                        otpCode,
-                        OtpType.PASSWORD_RESET,
-                        LocalDateTime.now()
-                )
-                .orElseThrow(() -> new RuntimeException("Invalid or expired OTP"));
-
-        otp.setUsed(true);
-        otp.setVerifiedAt(LocalDateTime.now());
-        otpRepository.save(otp);
+        consumeOtp(phone, OtpType.PASSWORD_RESET, otpCode);
+    }
+
+    private void consumeOtp(String phone, OtpType otpType, String otpCode) {
+        OtpStore.Verification verification = otpStore.verify(phone, otpType, otpCode);
+
+        switch (verification.outcome()) {
+            case VERIFIED -> otpAuditService.recordVerified(phone, otpType, otpStore.hash(phone, otpType, otpCode));
+            case ATTEMPTS_EXHAUSTED -> throw new RuntimeException("Maximum retry attempts exceeded");
+            default -> throw new RuntimeException("Invalid or expired OTP");
+        }
     }
 
     private String generateOtp() {
-        Random random = new Random();
         StringBuilder otp = new StringBuilder();
 
         for (int i = 0; i < otpLength; i++) {
-            otp.append(random.nextInt(10));
+            otp.append(RANDOM.nextInt(10));
         }
 
         return otp.toString();
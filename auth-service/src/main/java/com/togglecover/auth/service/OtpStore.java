@@ -0,0 +1,160 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.entity.OtpType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Active OTPs in Redis, one per phone and type, as a hash
+ * ({@code otp:<type>:<phone>}) of the code's HMAC, the attempts made and the
+ * attempt limit, expiring with the OTP itself. Verification is a single
+ * script that counts the attempt and consumes the OTP on success or when
+ * attempts run out.
+ *
+ * <p>Issuing an OTP also appends its delivery to the {@link #OUTBOX_KEY}
+ * stream in the same script, so no OTP is stored without its delivery being
+ * queued; {@link OtpDeliveryDispatcher} sends it from there. The outbox entry
+ * does hold the plaintext code, since the provider needs it; the dispatcher
+ * deletes each entry as soon as it is sent, given up on or expired, so the
+ * code stays in Redis only while its delivery is pending.
+ */
+@Component
+public class OtpStore {
+
+    static final String OUTBOX_KEY = "otp:outbox";
+    private static final String KEY_PREFIX = "otp:";
+
+    // KEYS: OTP hash, outbox stream. ARGV: otpId, code hash, max attempts, ttl millis,
+    // cooldown millis, outbox max length, phone, type, code, expiry epoch millis.
+    // Returns {1} when issued, or {0, otpId, cooldownLeftMillis, ttlLeftMillis} while
+    // the current OTP is within its cooldown. Otherwise replaces any earlier OTP of
+    // the same phone and type.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ISSUE_SCRIPT = RedisScript.of(
+            "local current = redis.call('HGET', KEYS[1], 'id') " +
+                    "if current then " +
+                    "  local ttlLeft = redis.call('PTTL', KEYS[1]) " +
+                    "  local cooldownLeft = tonumber(ARGV[5]) - (tonumber(ARGV[4]) - ttlLeft) " +
+                    "  if cooldownLeft > 0 then return {0, current, cooldownLeft, ttlLeft} end " +
+                    "end " +
+                    "redis.call('DEL', KEYS[1]) " +
+                    "redis.call('HSET', KEYS[1], 'id', ARGV[1], 'hash', ARGV[2], 'attempts', 0, 'maxAttempts', ARGV[3]) " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[4]) " +
+                    "redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[6], '*', " +
+                    "'otpId', ARGV[1], 'phone', ARGV[7], 'type', ARGV[8], 'code', ARGV[9], 'expiresAt', ARGV[10]) " +
+                    "return {1}",
+            List.class);
+
+    // ARGV: HMAC of the presented code. Returns {1, otpId} when verified,
+    // {0} when there is no OTP, {-1, attemptsLeft} for a wrong code,
+    // {-2} for a wrong code that used up the last attempt.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> VERIFY_SCRIPT = RedisScript.of(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {0} end " +
+                    "local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1) " +
+                    "local max = tonumber(redis.call('HGET', KEYS[1], 'maxAttempts')) " +
+                    "if redis.call('HGET', KEYS[1], 'hash') == ARGV[1] then " +
+                    "  local id = redis.call('HGET', KEYS[1], 'id') " +
+                    "  redis.call('DEL', KEYS[1]) " +
+                    "  return {1, id} " +
+                    "end " +
+                    "if attempts >= max then redis.call('DEL', KEYS[1]) return {-2} end " +
+                    "return {-1, max - attempts}",
+            List.class);
+
+    public enum Outcome { VERIFIED, NOT_FOUND, WRONG_CODE, ATTEMPTS_EXHAUSTED }
+
+    public record Verification(Outcome outcome, String otpId, int attemptsLeft) {
+    }
+
+    /**
+     * The OTP that is now active: the one just issued, or (when {@code issued}
+     * is false) the earlier one, still within its resend cooldown.
+     */
+    public record Issue(boolean issued, String otpId, Duration retryAfter, Duration expiresIn) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final SecretKeySpec hashKey;
+    private final long outboxMaxLength;
+
+    public OtpStore(StringRedisTemplate redisTemplate,
+                    @Value("${otp.hash.secret}") String hashSecret,
+                    @Value("${otp.outbox.max-length:100000}") long outboxMaxLength) {
+        this.redisTemplate = redisTemplate;
+        this.hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.outboxMaxLength = outboxMaxLength;
+    }
+
+    /**
+     * Stores the OTP and queues its delivery, unless the phone was sent an OTP
+     * of this type less than {@code cooldown} ago that is still unused. Check
+     * and write are one script, so concurrent requests issue at most one OTP.
+     */
+    @SuppressWarnings("unchecked")
+    public Issue issue(String otpId, String phone, OtpType type, String code, int maxAttempts,
+                       Duration ttl, Duration cooldown) {
+        List<Object> result = redisTemplate.execute(ISSUE_SCRIPT, List.of(key(phone, type), OUTBOX_KEY),
+                otpId,
+                hash(phone, type, code),
+                String.valueOf(maxAttempts),
+                String.valueOf(ttl.toMillis()),
+                String.valueOf(cooldown.toMillis()),
+                String.valueOf(outboxMaxLength),
+                phone,
+                type.name(),
+                code,
+                String.valueOf(System.currentTimeMillis() + ttl.toMillis()));
+
+        if (result != null && !result.isEmpty() && (Long) result.get(0) == 0) {
+            return new Issue(false, (String) result.get(1),
+                    Duration.ofMillis((Long) result.get(2)), Duration.ofMillis((Long) result.get(3)));
+        }
+        return new Issue(true, otpId, cooldown, ttl);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Verification verify(String phone, OtpType type, String code) {
+        List<Object> result = redisTemplate.execute(VERIFY_SCRIPT, List.of(key(phone, type)), hash(phone, type, code));
+        long status = result != null && !result.isEmpty() ? (Long) result.get(0) : 0;
+
+        if (status == 1) {
+            return new Verification(Outcome.VERIFIED, (String) result.get(1), 0);
+        }
+        if (status == -1) {
+            return new Verification(Outcome.WRONG_CODE, null, ((Long) result.get(1)).intValue());
+        }
+        if (status == -2) {
+            return new Verification(Outcome.ATTEMPTS_EXHAUSTED, null, 0);
+        }
+        return new Verification(Outcome.NOT_FOUND, null, 0);
+    }
+
+    /**
+     * HMAC of the code bound to its phone and type; also what the audit copy stores.
+     */
+    String hash(String phone, OtpType type, String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(hashKey);
+            byte[] digest = mac.doFinal((phone + ":" + type + ":" + code).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static String key(String phone, OtpType type) {
+        return KEY_PREFIX + type + ":" + phone;
+    }
+}
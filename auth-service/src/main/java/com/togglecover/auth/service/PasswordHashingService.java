@@ -0,0 +1,121 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Password encoding and verification on the dedicated hashing executor. The
+ * calling request thread waits for the result, but at most queue-capacity
+ * hashes wait behind the pool; beyond that callers get a
+ * {@link PasswordHashingBusyException} at once instead of piling up.
+ * Background rehashes run on their own low-priority executor.
+ */
+@Service
+@Slf4j
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolTaskExecutor executor;
+    private final ThreadPoolTaskExecutor rehashExecutor;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Qualifier("passwordHashingExecutor") ThreadPoolTaskExecutor executor,
+                                  @Qualifier("passwordRehashExecutor") ThreadPoolTaskExecutor rehashExecutor,
+                                  MeterRegistry meterRegistry) {
+        this.passwordEncoder = passwordEncoder;
+        this.executor = executor;
+        this.rehashExecutor = rehashExecutor;
+
+        this.encodeTimer = Timer.builder("auth.password.hashing.duration")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("auth.password.hashing.duration")
+                .tag("operation", "matches")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password.hashing.queue.wait")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.hashing.rejected")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.queue.depth", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return run(() -> encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.record(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Hashes the password on the rehash executor without waiting, then hands the
+     * hash to {@code onHashed}. Skipped when its queue is full: the next login
+     * tries again.
+     */
+    public void encodeInBackground(String rawPassword, Consumer<String> onHashed) {
+        try {
+            rehashExecutor.execute(() -> {
+                try {
+                    onHashed.accept(encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    log.warn("Background rehash failed: {}", e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.debug("Rehash queue full, skipping background rehash");
+        }
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        long submittedAt = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashing.call();
+            });
+        } catch (TaskRejectedException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingBusyException("Password hashing queue is full", e);
+        }
+
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for password hashing", e);
+        }
+    }
+}
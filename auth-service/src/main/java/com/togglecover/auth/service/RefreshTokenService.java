@@ -0,0 +1,144 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.dto.TokenResponse;
+import com.togglecover.auth.entity.User;
+import com.togglecover.auth.security.JwtUtil;
+import com.togglecover.auth.security.ParsedToken;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sessions with rotating refresh tokens. Each session is a Redis hash
+ * ({@code refresh:session:<sessionId>}) holding the jti of its one valid
+ * refresh token plus the claims needed to mint access tokens, so a refresh
+ * is a single script call with no database or password hashing.
+ *
+ * <p>Presenting any older refresh token of a session means it was copied:
+ * the session is deleted and revoked, logging out both the thief and the
+ * legitimate client.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+
+    private static final String SESSION_KEY_PREFIX = "refresh:session:";
+
+    // ARGV: ttl millis, then field/value pairs
+    private static final RedisScript<Long> START_SCRIPT = RedisScript.of(
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) " +
+                    "return redis.call('PEXPIRE', KEYS[1], ARGV[1])",
+            Long.class);
+
+    // ARGV: presented jti, next jti, ttl millis.
+    // Returns {1, userId, phone, userType, fullName, deviceId} when rotated,
+    // {0} for an unknown or ended session, {-1} when an old token is reused.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ROTATE_SCRIPT = RedisScript.of(
+            "local current = redis.call('HGET', KEYS[1], 'jti') " +
+                    "if not current then return {0} end " +
+                    "if current ~= ARGV[1] then redis.call('DEL', KEYS[1]) return {-1} end " +
+                    "redis.call('HSET', KEYS[1], 'jti', ARGV[2]) " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+                    "local fields = redis.call('HMGET', KEYS[1], 'userId', 'phone', 'userType', 'fullName', 'deviceId') " +
+                    "return {1, fields[1], fields[2], fields[3], fields[4], fields[5]}",
+            List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationService revocationService;
+
+    @Value("${jwt.expiration}")
+    private Long accessTokenExpiration;
+
+    @Value("${jwt.refresh.expiration:2592000000}")
+    private Long refreshTokenExpiration;
+
+    /**
+     * Starts a new session for a user who just authenticated and returns its
+     * first access and refresh tokens.
+     */
+    public TokenResponse startSession(User user, String deviceId) {
+        String sessionId = UUID.randomUUID().toString();
+        String jti = UUID.randomUUID().toString();
+
+        redisTemplate.execute(START_SCRIPT, List.of(SESSION_KEY_PREFIX + sessionId),
+                String.valueOf(refreshTokenExpiration),
+                "jti", jti,
+                "userId", user.getId(),
+                "phone", nullToEmpty(user.getPhone()),
+                "userType", user.getUserType().name(),
+                "fullName", nullToEmpty(user.getFullName()),
+                "deviceId", nullToEmpty(deviceId));
+
+        return tokens(user, sessionId, deviceId, jti);
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token,
+     * invalidating the one presented.
+     */
+    @SuppressWarnings("unchecked")
+    public TokenResponse refresh(String refreshToken) {
+        ParsedToken presented = jwtUtil.tryParseRefreshToken(refreshToken)
+                .filter(token -> token.getSessionId() != null && token.getJti() != null)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token"));
+
+        String sessionId = presented.getSessionId();
+        String nextJti = UUID.randomUUID().toString();
+        List<Object> result = redisTemplate.execute(ROTATE_SCRIPT, List.of(SESSION_KEY_PREFIX + sessionId),
+                presented.getJti(), nextJti, String.valueOf(refreshTokenExpiration));
+
+        long outcome = result != null && !result.isEmpty() ? (Long) result.get(0) : 0;
+        if (outcome == -1) {
+            revocationService.revokeSession(sessionId);
+            log.warn("Refresh token reuse detected for session {} of user {}, session revoked",
+                    sessionId, presented.getUserId());
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Refresh token has already been used");
+        }
+        if (outcome != 1) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Session has expired or ended");
+        }
+
+        // Claims as of login; changes to the user apply from their next login
+        User user = User.builder()
+                .id((String) result.get(1))
+                .phone(emptyToNull((String) result.get(2)))
+                .userType(User.UserType.valueOf((String) result.get(3)))
+                .fullName(emptyToNull((String) result.get(4)))
+                .build();
+        return tokens(user, sessionId, emptyToNull((String) result.get(5)), nextJti);
+    }
+
+    public void endSession(String sessionId) {
+        redisTemplate.delete(SESSION_KEY_PREFIX + sessionId);
+    }
+
+    private TokenResponse tokens(User user, String sessionId, String deviceId, String refreshJti) {
+        return TokenResponse.builder()
+                .accessToken(jwtUtil.generateToken(user, sessionId, deviceId))
+                .refreshToken(jwtUtil.generateRefreshToken(user, sessionId, refreshJti))
+                .tokenType("Bearer")
+                .expiresIn(accessTokenExpiration)
+                .refreshExpiresIn(refreshTokenExpiration)
+                .build();
+    }
+
+    // Redis hashes cannot hold nulls, and Lua tables would truncate at one
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
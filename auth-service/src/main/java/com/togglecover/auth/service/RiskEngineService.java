@@ -1,151 +1,185 @@
 package com.togglecover.auth.service;
 
+import com.togglecover.auth.config.RiskEngineConfig;
 import com.togglecover.auth.dto.RegisterRequest;
 import com.togglecover.auth.dto.VerifyOtpRequest;
 import com.togglecover.auth.entity.User;
-import lombok.RequiredArgsConstructor;
+import com.togglecover.auth.service.risk.RiskContext;
+import com.togglecover.auth.service.risk.RiskSignal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Scores registrations and logins from the {@link RiskSignal} beans. The
+ * signals of an assessment run concurrently, each on a virtual thread with
+ * its own deadline ({@code risk.engine.signals.<name>.deadline}), so the
+ * assessment takes as long as its slowest deadline at most. A signal that
+ * fires adds its weight; one that fails or misses its deadline adds its
+ * fallback score. Scores above {@code risk.engine.threshold.high} are high
+ * risk, above {@code risk.engine.threshold.medium} need additional
+ * authentication.
+ *
+ * <p>Each signal's run time is recorded as {@code auth.risk.signal.duration},
+ * tagged with the signal and its outcome ({@code ok}, {@code error}, or
+ * {@code late} when it finished after its deadline); deadlines missed are
+ * counted in {@code auth.risk.signal.timeouts}.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class RiskEngineService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final GeoLocationService geoLocationService;
+    private static final SignalScore NO_RISK = new SignalScore(0, null);
+
+    private final List<RiskSignal> signals;
+    private final RiskEngineConfig config;
+    private final ExecutorService executor;
     private final DeviceFingerprintService deviceFingerprintService;
+    private final LoginLockoutService loginLockoutService;
+    private final MeterRegistry meterRegistry;
+
+    public RiskEngineService(List<RiskSignal> signals,
+                             RiskEngineConfig config,
+                             @Qualifier("riskSignalExecutor") ExecutorService executor,
+                             DeviceFingerprintService deviceFingerprintService,
+                             LoginLockoutService loginLockoutService,
+                             MeterRegistry meterRegistry) {
+        this.signals = signals;
+        this.config = config;
+        this.executor = executor;
+        this.deviceFingerprintService = deviceFingerprintService;
+        this.loginLockoutService = loginLockoutService;
+        this.meterRegistry = meterRegistry;
+    }
 
     public RiskAssessment assessRegistrationRisk(RegisterRequest request) {
-        int riskScore = 0;
-        StringBuilder reasons = new StringBuilder();
-
-        // 1. Check for disposable email
-        if (isDisposableEmail(request.getEmail())) {
-            riskScore += 20;
-            reasons.append("Disposable email detected; ");
-        }
-
-        // 2. Check age
-        if (request.getAge() < 18 || request.getAge() > 65) {
-            riskScore += 15;
-            reasons.append("Age outside typical range; ");
-        }
-
-        // 3. Check phone number reputation
-        if (isSuspiciousPhoneNumber(request.getPhone())) {
-            riskScore += 25;
-            reasons.append("Suspicious phone number; ");
-        }
-
-        // 4. Check if multiple registrations from same IP/Device
-        String registrationKey = "reg:ip:" + getClientIp();
-        Integer regCount = (Integer) redisTemplate.opsForValue().get(registrationKey);
-
-        if (regCount != null && regCount > 3) {
-            riskScore += 30;
-            reasons.append("Multiple registrations from same source; ");
-        }
-
-        redisTemplate.opsForValue().increment(registrationKey, 1);
-        redisTemplate.expire(registrationKey, 24, TimeUnit.HOURS);
-
-        boolean highRisk = riskScore > 50;
-
-        return RiskAssessment.builder()
-                .riskScore(riskScore)
-                .highRisk(highRisk)
-                .reasons(reasons.toString())
-                .build();
+        return assess(RiskContext.builder()
+                .kind(RiskContext.Kind.REGISTRATION)
+                .registration(request)
+                .clientIp(getClientIp())
+                .build());
     }
 
     public RiskAssessment assessLoginRisk(User user, Object loginRequest) {
-        int riskScore = 0;
-        StringBuilder reasons = new StringBuilder();
-
-        // 1. Check failed login attempts
-        String failedLoginKey = "failed:login:" + user.getPhone();
-        Integer failedAttempts = (Integer) redisTemplate.opsForValue().get(failedLoginKey);
+        return assess(loginContext(RiskContext.Kind.LOGIN, user));
+    }
 
-        if (failedAttempts != null && failedAttempts > 5) {
-            riskScore += 25;
-            reasons.append("Multiple failed login attempts; ");
-        }
+    public RiskAssessment assessOtpLoginRisk(User user, VerifyOtpRequest request) {
+        return assess(loginContext(RiskContext.Kind.OTP_LOGIN, user));
+    }
 
-        // 2. Check location anomaly
-        String lastLocationKey = "user:location:" + user.getId();
-        String lastLocation = (String) redisTemplate.opsForValue().get(lastLocationKey);
-        String currentLocation = geoLocationService.getLocation(getClientIp());
+    private RiskContext loginContext(RiskContext.Kind kind, User user) {
+        return RiskContext.builder()
+                .kind(kind)
+                .user(user)
+                .clientIp(getClientIp())
+                .deviceFingerprint(deviceFingerprintService.getDeviceFingerprint())
+                .build();
+    }
 
-        if (lastLocation != null && !lastLocation.equals(currentLocation)) {
-            // Check if distance is suspicious (e.g., login from different country within short time)
-            riskScore += 20;
-            reasons.append("Unusual location detected; ");
+    private RiskAssessment assess(RiskContext context) {
+        if (!config.isEnabled()) {
+            return RiskAssessment.builder().reasons("").build();
         }
 
-        redisTemplate.opsForValue().set(lastLocationKey, currentLocation, 7, TimeUnit.DAYS);
-
-        // 3. Check device fingerprint
-        String deviceFingerprint = deviceFingerprintService.getDeviceFingerprint();
-        String knownDevicesKey = "user:devices:" + user.getId();
+        long start = System.nanoTime();
+        List<CompletableFuture<SignalScore>> scores = signals.stream()
+                .filter(signal -> signal.appliesTo(context.getKind()))
+                .map(signal -> evaluate(signal, context))
+                .toList();
 
-        if (!redisTemplate.opsForSet().isMember(knownDevicesKey, deviceFingerprint)) {
-            riskScore += 15;
-            reasons.append("New device detected; ");
-            // Add to known devices
-            redisTemplate.opsForSet().add(knownDevicesKey, deviceFingerprint);
-        }
-
-        // 4. Check time anomaly (unusual login hours)
-        int hour = LocalDateTime.now().getHour();
-        if (hour < 6 || hour > 23) { // Login between 11 PM and 6 AM
-            riskScore += 10;
-            reasons.append("Unusual login time; ");
+        int riskScore = 0;
+        StringBuilder reasons = new StringBuilder();
+        for (CompletableFuture<SignalScore> score : scores) {
+            SignalScore signalScore = score.join();
+            riskScore += signalScore.score();
+            if (signalScore.reason() != null) {
+                reasons.append(signalScore.reason()).append("; ");
+            }
         }
 
-        boolean highRisk = riskScore > 40;
+        Timer.builder("auth.risk.assessment.duration")
+                .tag("kind", context.getKind().name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
+        RiskEngineConfig.Threshold threshold = config.getThreshold();
         return RiskAssessment.builder()
                 .riskScore(riskScore)
-                .highRisk(highRisk)
+                .highRisk(riskScore > threshold.getHigh())
                 .reasons(reasons.toString())
-                .requiresAdditionalAuth(riskScore > 30)
+                .requiresAdditionalAuth(riskScore > threshold.getMedium())
                 .build();
     }
 
-    public RiskAssessment assessOtpLoginRisk(User user, VerifyOtpRequest request) {
-        RiskAssessment loginRisk = assessLoginRisk(user, request);
-
-        // Additional OTP-specific checks
-        int riskScore = loginRisk.getRiskScore();
-
-        // Check OTP request frequency
-        String otpRequestKey = "otp:requests:" + user.getPhone();
-        Integer otpRequests = (Integer) redisTemplate.opsForValue().get(otpRequestKey);
-
-        if (otpRequests != null && otpRequests > 10) {
-            riskScore += 20;
-            loginRisk.setReasons(loginRisk.getReasons() + "Excessive OTP requests; ");
+    /**
+     * Runs the signal on its own virtual thread; the returned future completes
+     * by the signal's deadline, with its fallback score if need be.
+     */
+    private CompletableFuture<SignalScore> evaluate(RiskSignal signal, RiskContext context) {
+        RiskEngineConfig.Signal settings = config.signal(signal.name());
+        int weight = config.weight(signal.name(), signal.defaultWeight());
+        SignalScore fallback = new SignalScore(settings.getFallbackScore(), null);
+        Duration deadline = config.deadline(signal.name());
+        CompletableFuture<SignalScore> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+
+        try {
+            executor.execute(() -> {
+                SignalScore score;
+                String outcome;
+                try {
+                    score = signal.evaluate(context)
+                            .map(reason -> new SignalScore(weight, reason))
+                            .orElse(NO_RISK);
+                    outcome = "ok";
+                } catch (Exception e) {
+                    log.warn("Risk signal {} failed, scoring {}: {}", signal.name(), fallback.score(), e.getMessage());
+                    score = fallback;
+                    outcome = "error";
+                }
+                // Late runs are still timed, to show how far past its deadline a signal runs
+                signalTimer(signal, result.complete(score) ? outcome : "late")
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(fallback);
         }
 
-        redisTemplate.opsForValue().increment(otpRequestKey, 1);
-        redisTemplate.expire(otpRequestKey, 1, TimeUnit.HOURS);
+        return result.orTimeout(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    meterRegistry.counter("auth.risk.signal.timeouts", "signal", signal.name()).increment();
+                    log.warn("Risk signal {} missed its {} ms deadline, scoring {}",
+                            signal.name(), deadline.toMillis(), fallback.score());
+                    return fallback;
+                });
+    }
 
-        loginRisk.setRiskScore(riskScore);
-        loginRisk.setHighRisk(riskScore > 40);
-        loginRisk.setRequiresAdditionalAuth(riskScore > 25);
+    private Timer signalTimer(RiskSignal signal, String outcome) {
+        return Timer.builder("auth.risk.signal.duration")
+                .tag("signal", signal.name())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
 
-        return loginRisk;
+    private record SignalScore(int score, String reason) {
     }
 
+    // Counted atomically by the lockout gate, which also locks the phone at the limit
     public void recordFailedLoginAttempt(String phone) {
-        String key = "failed:login:" + phone;
-        redisTemplate.opsForValue().increment(key, 1);
-        redisTemplate.expire(key, 1, TimeUnit.HOURS);
+        loginLockoutService.recordFailure(phone);
     }
 
     public void logSecurityEvent(String userId, String eventType, String description) {
@@ -162,23 +196,6 @@ public class RiskEngineService {
         log.warn("Security Event: {} - {} - {}", userId, eventType, description);
     }
 
-    private boolean isDisposableEmail(String email) {
-        // Implement check against known disposable email domains
-        String[] disposableDomains = {"tempmail.com", "mailinator.com", "guerrillamail.com"};
-        for (String domain : disposableDomains) {
-            if (email.endsWith("@" + domain)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean isSuspiciousPhoneNumber(String phone) {
-        // Check against known fraudulent patterns
-        // In production, integrate with phone validation service
-        return false;
-    }
-
     private String getClientIp() {
         // Get from request context
         return "127.0.0.1"; // Placeholder
@@ -1,7 +1,13 @@
 package com.togglecover.auth.service;
 
+import java.util.List;
+
 public interface SMSService {
     boolean sendSMS(String phoneNumber, String message);
+    boolean sendSMSBatch(List<Sms> messages);
     boolean sendOTP(String phoneNumber, String otp, String templateId);
     boolean sendTransactionalSMS(String phoneNumber, String message, String templateId);
-}
\ No newline at end of file
+
+    record Sms(String phoneNumber, String message) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.security.BloomFilter;
+import com.togglecover.auth.security.ParsedToken;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Revoked tokens, sessions and users, stored in Redis as
+ * {@code revoked:jti:<jti>}, {@code revoked:session:<sessionId>} and
+ * {@code revoked:user:<userId>} (the latter holding a cutoff in epoch seconds:
+ * tokens issued at or before it are revoked, including any issued in the
+ * same second).
+ *
+ * <p>Every revocation is published on {@link #CHANNEL} and each JVM that
+ * verifies tokens keeps the entries in a Bloom filter, so a token that was
+ * never revoked is accepted without a Redis call. Only filter hits are
+ * checked against Redis. The filter is rebuilt from Redis periodically,
+ * dropping expired entries and anything a dropped subscription missed.
+ */
+@Service
+@Slf4j
+public class TokenRevocationService implements MessageListener {
+
+    public static final String CHANNEL = "auth:revocations";
+    static final String KEY_PREFIX = "revoked:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${revocation.bloom.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Value("${revocation.bloom.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    // Session and user entries must outlive every token they cover, refresh tokens included
+    @Value("${jwt.refresh.expiration:2592000000}")
+    private Long refreshTokenExpiration;
+
+    private volatile BloomFilter filter;
+    // Filter being rebuilt; revocations received meanwhile go into both
+    private volatile BloomFilter rebuilding;
+    // Until the first load from Redis every check goes to Redis
+    private volatile boolean loaded;
+
+    public TokenRevocationService(StringRedisTemplate redisTemplate,
+                                  RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        filter = new BloomFilter(expectedEntries, falsePositiveRate);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public void revokeToken(ParsedToken token) {
+        if (token.getJti() == null || token.getExpiration() == null) {
+            return;
+        }
+        long remainingMillis = token.getExpiration().getTime() - System.currentTimeMillis();
+        if (remainingMillis > 0) {
+            revoke("jti:" + token.getJti(), "1", Duration.ofMillis(remainingMillis));
+        }
+    }
+
+    public void revokeSession(String sessionId) {
+        revoke("session:" + sessionId, "1", Duration.ofMillis(refreshTokenExpiration));
+    }
+
+    /**
+     * Revokes every token issued to the user so far, e.g. after a password reset.
+     */
+    public void revokeAllForUser(String userId) {
+        String cutoff = String.valueOf(System.currentTimeMillis() / 1000);
+        revoke("user:" + userId, cutoff, Duration.ofMillis(refreshTokenExpiration));
+    }
+
+    public boolean isRevoked(ParsedToken token) {
+        List<String> entries = new ArrayList<>(3);
+        if (token.getJti() != null) {
+            entries.add("jti:" + token.getJti());
+        }
+        if (token.getSessionId() != null) {
+            entries.add("session:" + token.getSessionId());
+        }
+        if (token.getUserId() != null) {
+            entries.add("user:" + token.getUserId());
+        }
+
+        if (loaded) {
+            BloomFilter current = filter;
+            entries.removeIf(entry -> !current.mightContain(entry));
+        }
+        if (entries.isEmpty()) {
+            return false;
+        }
+
+        List<String> values;
+        try {
+            values = redisTemplate.opsForValue().multiGet(entries.stream().map(entry -> KEY_PREFIX + entry).toList());
+        } catch (Exception e) {
+            // Revocation is best effort: Redis being down must not lock everyone out
+            log.warn("Revocation check unavailable, accepting token: {}", e.getMessage());
+            return false;
+        }
+        if (values == null) {
+            return false;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
+            if (!entries.get(i).startsWith("user:")) {
+                return true;
+            }
+            long issuedAt = token.getIssuedAt() != null ? token.getIssuedAt().getTime() / 1000 : 0;
+            if (issuedAt <= Long.parseLong(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        add(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Scheduled(fixedDelayString = "${revocation.bloom.rebuild-interval-ms:60000}")
+    public void rebuildFilter() {
+        BloomFilter next = new BloomFilter(expectedEntries, falsePositiveRate);
+        rebuilding = next;
+        int count = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                next.put(keys.next().substring(KEY_PREFIX.length()));
+                count++;
+            }
+        } catch (Exception e) {
+            rebuilding = null;
+            log.warn("Revocation filter rebuild failed, keeping the current one: {}", e.getMessage());
+            return;
+        }
+
+        // Swap before clearing so no concurrent revocation lands only in the old filter
+        filter = next;
+        rebuilding = null;
+        loaded = true;
+        if (count > expectedEntries) {
+            log.warn("{} revocations exceed revocation.bloom.expected-entries ({}), more checks will reach Redis",
+                    count, expectedEntries);
+        }
+    }
+
+    private void revoke(String entry, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + entry, value, ttl);
+        add(entry);
+        redisTemplate.convertAndSend(CHANNEL, entry);
+    }
+
+    private void add(String entry) {
+        filter.put(entry);
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(entry);
+        }
+    }
+}
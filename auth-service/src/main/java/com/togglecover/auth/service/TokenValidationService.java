@@ -0,0 +1,56 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.dto.TokenValidationResult;
+import com.togglecover.auth.security.JwtUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@RequiredArgsConstructor
+public class TokenValidationService {
+
+    private final JwtUtil jwtUtil;
+    private final ThreadPoolTaskExecutor tokenValidationExecutor;
+
+    // Tokens verified per executor task; smaller batches are verified on the request thread
+    @Value("${token.validation.batch.chunk-size:16}")
+    private int chunkSize;
+
+    public TokenValidationResult validate(String token) {
+        return jwtUtil.tryParse(token)
+                .map(parsed -> TokenValidationResult.builder()
+                        .valid(true)
+                        .userId(parsed.getUserId())
+                        .userType(parsed.getUserType() != null ? parsed.getUserType().name() : null)
+                        .expiresAt(parsed.getExpiration().getTime())
+                        .build())
+                .orElseGet(() -> TokenValidationResult.builder().valid(false).build());
+    }
+
+    /**
+     * Validates every token, returning results in the same order. Large batches are
+     * split into chunks verified in parallel on the token validation executor.
+     */
+    public List<TokenValidationResult> validateAll(List<String> tokens) {
+        if (tokens.size() <= chunkSize) {
+            return tokens.stream().map(this::validate).toList();
+        }
+
+        List<CompletableFuture<List<TokenValidationResult>>> chunks = new ArrayList<>();
+        for (int start = 0; start < tokens.size(); start += chunkSize) {
+            List<String> chunk = tokens.subList(start, Math.min(start + chunkSize, tokens.size()));
+            chunks.add(CompletableFuture.supplyAsync(
+                    () -> chunk.stream().map(this::validate).toList(), tokenValidationExecutor));
+        }
+
+        List<TokenValidationResult> results = new ArrayList<>(tokens.size());
+        chunks.forEach(chunk -> results.addAll(chunk.join()));
+        return results;
+    }
+}
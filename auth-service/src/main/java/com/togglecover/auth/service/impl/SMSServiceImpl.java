@@ -9,7 +9,9 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -22,27 +24,35 @@ public class SMSServiceImpl implements SMSService {
 
     @Override
     public boolean sendSMS(String phoneNumber, String message) {
-        // If demo mode is enabled, just log the message
+        return sendSMSBatch(List.of(new Sms(phoneNumber, message)));
+    }
+
+    /**
+     * Sends all messages in one MSG91 request, one {@code sms} entry each.
+     */
+    @Override
+    public boolean sendSMSBatch(List<Sms> messages) {
+        // If demo mode is enabled, just log the messages
         if (msg91Config.isDemoMode()) {
-            log.info("DEMO MODE: SMS to {}: {}", phoneNumber, message);
+            messages.forEach(sms -> log.info("DEMO MODE: SMS to {}: {}", sms.phoneNumber(), sms.message()));
             return true;
         }
 
         try {
-            // Format phone number (remove +91 if present)
-            String formattedPhone = phoneNumber.startsWith("+91") ?
-                    phoneNumber.substring(3) : phoneNumber;
-
             // Build request body for MSG91
             Map<String, Object> requestBody = new HashMap<>();
             requestBody.put("sender", msg91Config.getSenderId());
             requestBody.put("route", msg91Config.getRoute());
             requestBody.put("country", msg91Config.getCountry());
 
-            Map<String, Object> sms = new HashMap<>();
-            sms.put("message", message);
-            sms.put("to", new String[]{formattedPhone});
-            requestBody.put("sms", new Map[]{sms});
+            List<Map<String, Object>> smsEntries = new ArrayList<>(messages.size());
+            for (Sms sms : messages) {
+                Map<String, Object> entry = new HashMap<>();
+                entry.put("message", sms.message());
+                entry.put("to", new String[]{formatPhoneNumber(sms.phoneNumber())});
+                smsEntries.add(entry);
+            }
+            requestBody.put("sms", smsEntries);
 
             // Set headers
             HttpHeaders headers = new HttpHeaders();
@@ -56,13 +66,12 @@ public class SMSServiceImpl implements SMSService {
             ResponseEntity<String> response = restTemplate.exchange(
                     url, HttpMethod.POST, entity, String.class);
 
-            log.info("SMS sent to {}: Status {}", phoneNumber, response.getStatusCode());
+            log.info("{} SMS sent: Status {}", messages.size(), response.getStatusCode());
             return response.getStatusCode().is2xxSuccessful();
 
         } catch (Exception e) {
-            log.error("Failed to send SMS to {}: {}", phoneNumber, e.getMessage());
-            // In demo mode, return true even if failed
-            return msg91Config.isDemoMode();
+            log.error("Failed to send {} SMS: {}", messages.size(), e.getMessage());
+            return false;
         }
     }
 
@@ -76,4 +85,9 @@ public class SMSServiceImpl implements SMSService {
     public boolean sendTransactionalSMS(String phoneNumber, String message, String templateId) {
         return sendSMS(phoneNumber, message);
     }
+
+    private String formatPhoneNumber(String phoneNumber) {
+        // Remove +91 if present
+        return phoneNumber.startsWith("+91") ? phoneNumber.substring(3) : phoneNumber;
+    }
 }
\ No newline at end of file
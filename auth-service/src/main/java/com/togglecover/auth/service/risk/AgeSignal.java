@@ -0,0 +1,32 @@
+package com.togglecover.auth.service.risk;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+public class AgeSignal implements RiskSignal {
+
+    @Override
+    public String name() {
+        return "age";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 15;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind == RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        int age = context.getRegistration().getAge();
+        return age < 18 || age > 65
+                ? Optional.of("Age outside typical range")
+                : Optional.empty();
+    }
+}
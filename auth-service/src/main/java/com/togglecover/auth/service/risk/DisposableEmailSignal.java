@@ -0,0 +1,40 @@
+package com.togglecover.auth.service.risk;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.Set;
+
+@Component
+public class DisposableEmailSignal implements RiskSignal {
+
+    // Known disposable email domains
+    private static final Set<String> DISPOSABLE_DOMAINS = Set.of("tempmail.com", "mailinator.com", "guerrillamail.com");
+
+    @Override
+    public String name() {
+        return "disposable-email";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 20;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind == RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        String email = context.getRegistration().getEmail();
+        if (email == null) {
+            return Optional.empty();
+        }
+        String domain = email.substring(email.lastIndexOf('@') + 1);
+        return DISPOSABLE_DOMAINS.contains(domain)
+                ? Optional.of("Disposable email detected")
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,35 @@
+package com.togglecover.auth.service.risk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+public class FailedLoginsSignal implements RiskSignal {
+
+    private final LoginActivity loginActivity;
+
+    @Override
+    public String name() {
+        return "failed-logins";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 25;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind != RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        return loginActivity.of(context).failedAttempts() > 5
+                ? Optional.of("Multiple failed login attempts")
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,58 @@
+package com.togglecover.auth.service.risk;
+
+import com.togglecover.auth.service.GeoLocationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A login from another location than the user's last one. The location comes
+ * from a remote lookup, the slowest signal, hence its own deadline.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocationSignal implements RiskSignal {
+
+    // KEYS: last location. ARGV: current location, ttl millis. Returns the previous location.
+    private static final RedisScript<String> SWAP_SCRIPT = RedisScript.of(
+            "local last = redis.call('GET', KEYS[1]) " +
+                    "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+                    "return last",
+            String.class);
+
+    private final GeoLocationService geoLocationService;
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public String name() {
+        return "location";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 20;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind != RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        String currentLocation = geoLocationService.getLocation(context.getClientIp());
+        String lastLocation = redisTemplate.execute(SWAP_SCRIPT,
+                List.of("user:location:" + context.getUser().getId()),
+                currentLocation, String.valueOf(TimeUnit.DAYS.toMillis(7)));
+
+        // Check if distance is suspicious (e.g., login from different country within short time)
+        return lastLocation != null && !lastLocation.equals(currentLocation)
+                ? Optional.of("Unusual location detected")
+                : Optional.empty();
+    }
+}
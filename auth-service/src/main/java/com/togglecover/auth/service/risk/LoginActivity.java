@@ -0,0 +1,62 @@
+package com.togglecover.auth.service.risk;
+
+import com.togglecover.auth.service.LoginLockoutService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Redis-backed login signals (failed logins, new device, OTP requests),
+ * read and recorded in one script call per assessment however many of those
+ * signals run.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginActivity {
+
+    // KEYS: recent failed logins, known devices[, OTP request counter].
+    // ARGV: device fingerprint, OTP request window millis.
+    // Records the device and OTP request, and returns
+    // {failedAttempts, 1 if the device is new, OTP requests before this one}.
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SCRIPT = RedisScript.of(
+            "local failed = tonumber(redis.call('GET', KEYS[1])) or 0 " +
+                    "local newDevice = redis.call('SADD', KEYS[2], ARGV[1]) " +
+                    "local otpRequests = 0 " +
+                    "if KEYS[3] then " +
+                    "  otpRequests = redis.call('INCR', KEYS[3]) - 1 " +
+                    "  redis.call('PEXPIRE', KEYS[3], ARGV[2]) " +
+                    "end " +
+                    "return {failed, newDevice, otpRequests}",
+            List.class);
+
+    public record Snapshot(long failedAttempts, boolean newDevice, long otpRequests) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+
+    public Snapshot of(RiskContext context) {
+        return context.shared("login-activity", () -> load(context));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Snapshot load(RiskContext context) {
+        List<String> keys = new ArrayList<>(3);
+        keys.add(LoginLockoutService.RECENT_FAILURES_KEY_PREFIX + context.getUser().getPhone());
+        keys.add("user:devices:" + context.getUser().getId());
+        if (context.getKind() == RiskContext.Kind.OTP_LOGIN) {
+            keys.add("otp:requests:" + context.getUser().getPhone());
+        }
+
+        List<Object> result = redisTemplate.execute(SCRIPT, keys,
+                context.getDeviceFingerprint(),
+                String.valueOf(TimeUnit.HOURS.toMillis(1)));
+
+        return new Snapshot((Long) result.get(0), (Long) result.get(1) == 1, (Long) result.get(2));
+    }
+}
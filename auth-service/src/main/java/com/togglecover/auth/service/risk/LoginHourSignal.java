@@ -0,0 +1,33 @@
+package com.togglecover.auth.service.risk;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Component
+public class LoginHourSignal implements RiskSignal {
+
+    @Override
+    public String name() {
+        return "login-hour";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 10;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind != RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        int hour = LocalDateTime.now().getHour();
+        return hour < 6 || hour > 23 // Login between 11 PM and 6 AM
+                ? Optional.of("Unusual login time")
+                : Optional.empty();
+    }
+}
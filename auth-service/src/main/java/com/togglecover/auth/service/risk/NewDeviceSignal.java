@@ -0,0 +1,38 @@
+package com.togglecover.auth.service.risk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * A device fingerprint not seen for the user before; it is known from then on.
+ */
+@Component
+@RequiredArgsConstructor
+public class NewDeviceSignal implements RiskSignal {
+
+    private final LoginActivity loginActivity;
+
+    @Override
+    public String name() {
+        return "new-device";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 15;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind != RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        return loginActivity.of(context).newDevice()
+                ? Optional.of("New device detected")
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,38 @@
+package com.togglecover.auth.service.risk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * OTP logins requested more than ten times within an hour.
+ */
+@Component
+@RequiredArgsConstructor
+public class OtpRequestsSignal implements RiskSignal {
+
+    private final LoginActivity loginActivity;
+
+    @Override
+    public String name() {
+        return "otp-requests";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 20;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind == RiskContext.Kind.OTP_LOGIN;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        return loginActivity.of(context).otpRequests() > 10
+                ? Optional.of("Excessive OTP requests")
+                : Optional.empty();
+    }
+}
@@ -0,0 +1,31 @@
+package com.togglecover.auth.service.risk;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+@Component
+public class PhoneReputationSignal implements RiskSignal {
+
+    @Override
+    public String name() {
+        return "phone-reputation";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 25;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind == RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        // Check against known fraudulent patterns
+        // In production, integrate with phone validation service
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,51 @@
+package com.togglecover.auth.service.risk;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multiple registrations from the same source within a day.
+ */
+@Component
+@RequiredArgsConstructor
+public class RegistrationVelocitySignal implements RiskSignal {
+
+    // KEYS: counter. ARGV: window millis. Returns the count before this one.
+    private static final RedisScript<Long> COUNT_SCRIPT = RedisScript.of(
+            "local count = redis.call('INCR', KEYS[1]) " +
+                    "redis.call('PEXPIRE', KEYS[1], ARGV[1]) " +
+                    "return count - 1",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Override
+    public String name() {
+        return "registration-velocity";
+    }
+
+    @Override
+    public int defaultWeight() {
+        return 30;
+    }
+
+    @Override
+    public boolean appliesTo(RiskContext.Kind kind) {
+        return kind == RiskContext.Kind.REGISTRATION;
+    }
+
+    @Override
+    public Optional<String> evaluate(RiskContext context) {
+        Long regCount = redisTemplate.execute(COUNT_SCRIPT, List.of("reg:ip:" + context.getClientIp()),
+                String.valueOf(TimeUnit.HOURS.toMillis(24)));
+        return regCount != null && regCount > 3
+                ? Optional.of("Multiple registrations from same source")
+                : Optional.empty();
+    }
+}
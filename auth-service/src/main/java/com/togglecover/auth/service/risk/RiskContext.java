@@ -0,0 +1,51 @@
+package com.togglecover.auth.service.risk;
+
+import com.togglecover.auth.dto.RegisterRequest;
+import com.togglecover.auth.entity.User;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * What is being assessed. Anything taken from the HTTP request is captured
+ * here on the request thread, since signals run on other threads.
+ */
+@Getter
+@Builder
+public class RiskContext {
+
+    public enum Kind { REGISTRATION, LOGIN, OTP_LOGIN }
+
+    private final Kind kind;
+    // Set for REGISTRATION
+    private final RegisterRequest registration;
+    // Set for LOGIN and OTP_LOGIN
+    private final User user;
+    private final String clientIp;
+    private final String deviceFingerprint;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> shared = new ConcurrentHashMap<>();
+
+    /**
+     * Loads a value once per assessment for all signals that need it, e.g. one
+     * Redis call serving several signals. Concurrent callers wait for the first.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T shared(String key, Supplier<T> loader) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = shared.putIfAbsent(key, created);
+        if (existing == null) {
+            try {
+                created.complete(loader.get());
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+            existing = created;
+        }
+        return (T) existing.join();
+    }
+}
@@ -0,0 +1,33 @@
+package com.togglecover.auth.service.risk;
+
+import java.util.Optional;
+
+/**
+ * One input to a risk assessment. Every {@code RiskSignal} bean that applies
+ * to an assessment is evaluated concurrently on its own virtual thread; its
+ * weight, deadline and fallback score come from
+ * {@code risk.engine.signals.<name>.*}, the weight defaulting to
+ * {@link #defaultWeight()}. A signal that misses its deadline or
+ * throws scores its fallback instead, so a slow provider only ever costs its
+ * own deadline.
+ */
+public interface RiskSignal {
+
+    /**
+     * Name used in configuration and metrics, e.g. {@code new-device}.
+     */
+    String name();
+
+    /**
+     * Score when the signal fires and {@code risk.engine.signals.<name>.weight} is not set.
+     */
+    int defaultWeight();
+
+    boolean appliesTo(RiskContext.Kind kind);
+
+    /**
+     * Returns the reason when the signal fires, which then scores its full
+     * weight, or empty when it does not.
+     */
+    Optional<String> evaluate(RiskContext context) throws Exception;
+}
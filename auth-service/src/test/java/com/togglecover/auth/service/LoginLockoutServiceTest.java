@@ -0,0 +1,125 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.entity.User;
+import com.togglecover.auth.exception.AccountLockedException;
+import com.togglecover.auth.service.risk.FailedLoginsSignal;
+import com.togglecover.auth.service.risk.LoginActivity;
+import com.togglecover.auth.service.risk.RiskContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The lockout script and the failed-logins risk signal against a real Redis,
+ * since both read and write the counters from Lua.
+ */
+class LoginLockoutServiceTest {
+
+    private static final String PHONE = "+919000000001";
+    private static final int MAX_FAILED_ATTEMPTS = 5;
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private LoginLockoutService lockoutService;
+    private FailedLoginsSignal failedLoginsSignal;
+    private User user;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.getRequiredConnectionFactory().getConnection().serverCommands().flushAll();
+
+        lockoutService = new LoginLockoutService(redisTemplate);
+        ReflectionTestUtils.setField(lockoutService, "maxFailedAttempts", MAX_FAILED_ATTEMPTS);
+        ReflectionTestUtils.setField(lockoutService, "lockoutMinutes", 30L);
+        failedLoginsSignal = new FailedLoginsSignal(new LoginActivity(redisTemplate));
+        user = User.builder()
+                .id("user-1")
+                .phone(PHONE)
+                .userType(User.UserType.GIG_WORKER)
+                .build();
+    }
+
+    @Test
+    void locksThePhoneAtTheLimit() {
+        for (int i = 1; i < MAX_FAILED_ATTEMPTS; i++) {
+            lockoutService.recordFailure(PHONE);
+        }
+        assertThatCode(() -> lockoutService.checkNotLocked(PHONE)).doesNotThrowAnyException();
+
+        lockoutService.recordFailure(PHONE);
+
+        assertThatThrownBy(() -> lockoutService.checkNotLocked(PHONE)).isInstanceOf(AccountLockedException.class);
+    }
+
+    @Test
+    void failuresKeepCountingForTheRiskSignalAcrossALockout() {
+        for (int i = 0; i < MAX_FAILED_ATTEMPTS; i++) {
+            lockoutService.recordFailure(PHONE);
+        }
+        assertThat(failedLoginsSignal.evaluate(context())).isEmpty();
+
+        // The lock expires and the guessing goes on: the lockout count starts over, the risk count doesn't
+        redisTemplate.delete("lock:login:" + PHONE);
+        lockoutService.recordFailure(PHONE);
+
+        assertThatCode(() -> lockoutService.checkNotLocked(PHONE)).doesNotThrowAnyException();
+        assertThat(failedLoginsSignal.evaluate(context())).contains("Multiple failed login attempts");
+    }
+
+    @Test
+    void successfulLoginResetsTheLockoutCountOnly() {
+        for (int i = 0; i < MAX_FAILED_ATTEMPTS + 1; i++) {
+            lockoutService.recordFailure(PHONE);
+            redisTemplate.delete("lock:login:" + PHONE);
+        }
+        lockoutService.recordSuccess(PHONE);
+
+        assertThat(redisTemplate.hasKey(LoginLockoutService.FAILED_KEY_PREFIX + PHONE)).isFalse();
+        assertThat(failedLoginsSignal.evaluate(context())).contains("Multiple failed login attempts");
+    }
+
+    private RiskContext context() {
+        return RiskContext.builder()
+                .kind(RiskContext.Kind.LOGIN)
+                .user(user)
+                .clientIp("203.0.113.7")
+                .deviceFingerprint("device-1")
+                .build();
+    }
+}
@@ -0,0 +1,175 @@
+package com.togglecover.auth.service;
+
+import com.togglecover.auth.config.Msg91Config;
+import com.togglecover.auth.entity.OtpType;
+import com.togglecover.auth.service.impl.SMSServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.client.ResponseCreator;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.ExpectedCount.times;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.jsonPath;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class OtpDeliveryDispatcherTest {
+
+    private static final String SEND_SMS_URL = "http://msg91.test/api/v2/sendsms";
+    private static final String GROUP = "otp-dispatchers";
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streams;
+
+    @Mock
+    private WhatsAppService whatsAppService;
+
+    private MockRestServiceServer msg91;
+    private ThreadPoolTaskExecutor executor;
+    private OtpDeliveryDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForStream()).thenReturn(streams);
+
+        Msg91Config msg91Config = new Msg91Config();
+        msg91Config.setBaseUrl("http://msg91.test/api");
+        msg91Config.setAuthKey("test-key");
+        msg91Config.setDemoMode(false);
+        RestTemplate restTemplate = new RestTemplate();
+        msg91 = MockRestServiceServer.bindTo(restTemplate).build();
+
+        NotificationService notificationService =
+                new NotificationService(new SMSServiceImpl(msg91Config, restTemplate), whatsAppService);
+        ReflectionTestUtils.setField(notificationService, "deliveryMethod", "sms");
+        ReflectionTestUtils.setField(notificationService, "msg91Enabled", true);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.initialize();
+
+        dispatcher = new OtpDeliveryDispatcher(redisTemplate, notificationService, executor, 1, 1);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoffMillis", INITIAL_BACKOFF_MILLIS);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffMillis", 1000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void sendsEntriesReadTogetherAsOneMsg91Request() throws Exception {
+        msg91.expect(once(), requestTo(SEND_SMS_URL))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(jsonPath("$.sms.length()").value(3))
+                .andExpect(jsonPath("$.sms[0].to[0]").value("9000000001"))
+                .andExpect(jsonPath("$.sms[2].to[0]").value("9000000003"))
+                .andRespond(withSuccess());
+
+        dispatcher.dispatch(List.of(entry("1-0", "+919000000001"), entry("2-0", "+919000000002"),
+                entry("3-0", "+919000000003")));
+
+        verify(streams, timeout(2000)).delete(OtpStore.OUTBOX_KEY, "1-0", "2-0", "3-0");
+        verify(streams).acknowledge(OtpStore.OUTBOX_KEY, GROUP, "1-0", "2-0", "3-0");
+        msg91.verify();
+    }
+
+    @Test
+    void retriesFailedSendsWithExponentialBackoff() throws Exception {
+        List<Long> attemptTimes = new CopyOnWriteArrayList<>();
+        msg91.expect(times(2), requestTo(SEND_SMS_URL))
+                .andRespond(recordingTime(attemptTimes, withServerError()));
+        msg91.expect(once(), requestTo(SEND_SMS_URL))
+                .andRespond(recordingTime(attemptTimes, withSuccess()));
+
+        dispatcher.dispatch(List.of(entry("1-0", "+919000000001")));
+
+        verify(streams, timeout(2000)).delete(OtpStore.OUTBOX_KEY, "1-0");
+        verify(streams).acknowledge(OtpStore.OUTBOX_KEY, GROUP, "1-0");
+        msg91.verify();
+
+        assertThat(attemptTimes).hasSize(3);
+        long firstBackoff = TimeUnit.NANOSECONDS.toMillis(attemptTimes.get(1) - attemptTimes.get(0));
+        long secondBackoff = TimeUnit.NANOSECONDS.toMillis(attemptTimes.get(2) - attemptTimes.get(1));
+        assertThat(firstBackoff).isGreaterThanOrEqualTo(INITIAL_BACKOFF_MILLIS);
+        assertThat(secondBackoff).isGreaterThanOrEqualTo(2 * INITIAL_BACKOFF_MILLIS);
+    }
+
+    @Test
+    void removesEntriesEvenWhenEveryAttemptFails() throws Exception {
+        msg91.expect(times(3), requestTo(SEND_SMS_URL)).andRespond(withServerError());
+
+        dispatcher.dispatch(List.of(entry("1-0", "+919000000001"), entry("2-0", "+919000000002")));
+
+        verify(streams, timeout(2000)).delete(OtpStore.OUTBOX_KEY, "1-0", "2-0");
+        verify(streams).acknowledge(OtpStore.OUTBOX_KEY, GROUP, "1-0", "2-0");
+        msg91.verify();
+    }
+
+    @Test
+    void dropsExpiredEntriesWithoutSending() throws Exception {
+        MapRecord<String, Object, Object> expired =
+                entry("1-0", "+919000000001", System.currentTimeMillis() - 1000);
+
+        dispatcher.dispatch(List.of(expired));
+
+        verify(streams).acknowledge(eq(OtpStore.OUTBOX_KEY), eq(GROUP), eq("1-0"));
+        verify(streams).delete(eq(OtpStore.OUTBOX_KEY), any(String.class));
+        msg91.verify();
+    }
+
+    private static MapRecord<String, Object, Object> entry(String id, String phone) {
+        return entry(id, phone, System.currentTimeMillis() + 300_000);
+    }
+
+    private static MapRecord<String, Object, Object> entry(String id, String phone, long expiresAt) {
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("otpId", "otp-" + id);
+        fields.put("phone", phone);
+        fields.put("type", OtpType.LOGIN.name());
+        fields.put("code", "123456");
+        fields.put("expiresAt", String.valueOf(expiresAt));
+        return MapRecord.create(OtpStore.OUTBOX_KEY, fields).withId(RecordId.of(id));
+    }
+
+    private static ResponseCreator recordingTime(List<Long> times, ResponseCreator response) {
+        return request -> {
+            times.add(System.nanoTime());
+            return response.createResponse(request);
+        };
+    }
+}
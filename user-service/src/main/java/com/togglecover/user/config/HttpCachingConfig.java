@@ -0,0 +1,21 @@
+package com.togglecover.user.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+@Configuration
+public class HttpCachingConfig {
+
+    // ETags on profile reads let the gateway cache revalidate with If-None-Match
+    // and get a bodiless 304 when nothing changed
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> etagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/v1/users/*");
+        registration.setName("etagFilter");
+        return registration;
+    }
+}
@@ -2,12 +2,14 @@ package com.togglecover.user.controller;
 
 import com.togglecover.user.dto.UserProfileRequest;
 import com.togglecover.user.dto.UserProfileResponse;
+import com.togglecover.user.dto.UserStatsResponse;
 import com.togglecover.user.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -19,6 +21,9 @@ import org.springframework.web.bind.annotation.*;
 @Tag(name = "User Management", description = "User profile management endpoints")
 public class UserController {
 
+    // Clients may keep profiles but must revalidate them (answered with a 304 via the ETag filter)
+    private static final CacheControl PROFILE_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     private final UserService userService;
 
     @GetMapping("/profile")
@@ -28,7 +33,19 @@ public class UserController {
     )
     public ResponseEntity<UserProfileResponse> getCurrentUserProfile() {
         String userId = getCurrentUserId();
-        return ResponseEntity.ok(userService.getUserProfile(userId));
+        return ResponseEntity.ok()
+                .cacheControl(PROFILE_CACHE_CONTROL)
+                .body(userService.getUserProfile(userId));
+    }
+
+    @GetMapping("/profile/stats")
+    @Operation(
+            summary = "Get current user stats",
+            security = @SecurityRequirement(name = "bearerAuth")
+    )
+    public ResponseEntity<UserStatsResponse> getCurrentUserStats() {
+        String userId = getCurrentUserId();
+        return ResponseEntity.ok(userService.getUserStats(userId));
     }
 
     @GetMapping("/{userId}")
@@ -38,7 +55,9 @@ public class UserController {
     )
     public ResponseEntity<UserProfileResponse> getUserProfile(@PathVariable String userId) {
         // Add authorization check here if needed
-        return ResponseEntity.ok(userService.getUserProfile(userId));
+        return ResponseEntity.ok()
+                .cacheControl(PROFILE_CACHE_CONTROL)
+                .body(userService.getUserProfile(userId));
     }
 
     @PutMapping("/profile")
@@ -0,0 +1,14 @@
+package com.togglecover.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenBatchValidationRequest {
+    private List<String> tokens;
+}
@@ -0,0 +1,15 @@
+package com.togglecover.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenBatchValidationResponse {
+    // In the same order as the request's tokens
+    private List<TokenValidationResult> results;
+}
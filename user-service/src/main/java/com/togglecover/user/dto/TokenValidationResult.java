@@ -0,0 +1,18 @@
+package com.togglecover.user.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenValidationResult {
+    private boolean valid;
+    private String userId;
+    private String userType;
+    // Epoch milliseconds
+    private Long expiresAt;
+}
@@ -1,5 +1,7 @@
 package com.togglecover.user.feign;
 
+import com.togglecover.user.dto.TokenBatchValidationRequest;
+import com.togglecover.user.dto.TokenBatchValidationResponse;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -13,6 +15,10 @@ public interface AuthServiceClient {
     @PostMapping("/api/v1/auth/token/validate")
     ResponseEntity<Map<String, Object>> validateToken(@RequestBody Map<String, String> request);
 
+    // At most 100 tokens per call
+    @PostMapping("/api/v1/auth/token/validate/batch")
+    ResponseEntity<TokenBatchValidationResponse> validateTokens(@RequestBody TokenBatchValidationRequest request);
+
     @PostMapping("/api/v1/auth/token/user-info")
     ResponseEntity<Map<String, Object>> getUserInfo(@RequestBody Map<String, String> request);
 }
\ No newline at end of file
@@ -1,13 +1,12 @@
 package com.togglecover.user.security;
 
-import com.togglecover.user.feign.AuthServiceClient;
+import com.togglecover.user.dto.TokenValidationResult;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -16,15 +15,13 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtAuthFilter extends OncePerRequestFilter {
 
-    private final AuthServiceClient authServiceClient;
+    private final TokenValidationBatcher tokenValidationBatcher;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
@@ -43,32 +40,16 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             log.debug("JwtAuthFilter - Extracted token: {}", token.substring(0, Math.min(20, token.length())) + "...");
 
             try {
-                // Create request body with token
-                Map<String, String> requestBody = new HashMap<>();
-                requestBody.put("token", token);
-
-                log.debug("JwtAuthFilter - Calling auth-service with token");
-                ResponseEntity<Map<String, Object>> validationResponse =
-                        authServiceClient.validateToken(requestBody);
-
-                log.debug("JwtAuthFilter - Auth service response status: {}", validationResponse.getStatusCode());
-
-                Map<String, Object> responseBody = validationResponse.getBody();
-                log.debug("JwtAuthFilter - Auth service response body: {}", responseBody);
-
-                if (responseBody != null) {
-                    Boolean isValid = (Boolean) responseBody.get("valid");
-                    log.debug("JwtAuthFilter - Token validation result: {}", isValid);
-
-                    if (Boolean.TRUE.equals(isValid)) {
-                        userId = (String) responseBody.get("userId");
-                        userType = (String) responseBody.get("userType");
-                        log.debug("JwtAuthFilter - Extracted userId: {}, userType: {}", userId, userType);
-                    } else {
-                        log.warn("JwtAuthFilter - Token is invalid");
-                    }
+                log.debug("JwtAuthFilter - Validating token with auth-service");
+                TokenValidationResult validation = tokenValidationBatcher.validate(token);
+                log.debug("JwtAuthFilter - Token validation result: {}", validation.isValid());
+
+                if (validation.isValid()) {
+                    userId = validation.getUserId();
+                    userType = validation.getUserType();
+                    log.debug("JwtAuthFilter - Extracted userId: {}, userType: {}", userId, userType);
                 } else {
-                    log.warn("JwtAuthFilter - Auth service returned null response body");
+                    log.warn("JwtAuthFilter - Token is invalid");
                 }
             } catch (Exception e) {
                 log.error("JwtAuthFilter - Error validating token: {}", e.getMessage(), e);
@@ -0,0 +1,135 @@
+package com.togglecover.user.security;
+
+import com.togglecover.user.dto.TokenBatchValidationRequest;
+import com.togglecover.user.dto.TokenBatchValidationResponse;
+import com.togglecover.user.dto.TokenValidationResult;
+import com.togglecover.user.feign.AuthServiceClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Validates tokens against auth-service in micro-batches. Calls arriving within
+ * the batch window share one {@code /token/validate/batch} request, and
+ * concurrent calls for the same token share one slot in it.
+ *
+ * <p>The first caller into a batch waits out the window and then sends it; a
+ * caller that fills the batch sends it straight away. No extra threads are
+ * involved, each caller blocks until its batch's response arrives.
+ */
+@Component
+@Slf4j
+public class TokenValidationBatcher {
+
+    private final AuthServiceClient authServiceClient;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Duration timeout;
+
+    private final Object lock = new Object();
+    private Batch open = new Batch();
+
+    public TokenValidationBatcher(AuthServiceClient authServiceClient,
+                                  @Value("${auth.token-validation.batch-window:2ms}") Duration window,
+                                  @Value("${auth.token-validation.max-batch-size:50}") int maxBatchSize,
+                                  @Value("${auth.token-validation.timeout:5s}") Duration timeout) {
+        this.authServiceClient = authServiceClient;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @throws IllegalStateException if auth-service could not be reached or did
+     *                               not answer within the timeout
+     */
+    public TokenValidationResult validate(String token) {
+        Batch batch;
+        CompletableFuture<TokenValidationResult> result;
+        boolean leader = false;
+        boolean full = false;
+
+        synchronized (lock) {
+            batch = open;
+            result = batch.waiters.get(token);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                batch.waiters.put(token, result);
+                leader = batch.waiters.size() == 1;
+                if (batch.waiters.size() >= maxBatchSize) {
+                    open = new Batch();
+                    full = true;
+                }
+            }
+        }
+
+        if (full) {
+            send(batch);
+        } else if (leader) {
+            LockSupport.parkNanos(windowNanos);
+            if (close(batch)) {
+                send(batch);
+            }
+        }
+        return await(result);
+    }
+
+    private boolean close(Batch batch) {
+        synchronized (lock) {
+            // Already sent by whoever filled it
+            if (open != batch) {
+                return false;
+            }
+            open = new Batch();
+            return true;
+        }
+    }
+
+    private void send(Batch batch) {
+        List<String> tokens = new ArrayList<>(batch.waiters.keySet());
+        try {
+            TokenBatchValidationResponse response = authServiceClient
+                    .validateTokens(new TokenBatchValidationRequest(tokens))
+                    .getBody();
+            if (response == null || response.getResults() == null || response.getResults().size() != tokens.size()) {
+                throw new IllegalStateException("Malformed batch validation response from auth-service");
+            }
+            log.debug("Validated {} tokens in one batch", tokens.size());
+
+            for (int i = 0; i < tokens.size(); i++) {
+                batch.waiters.get(tokens.get(i)).complete(response.getResults().get(i));
+            }
+        } catch (Exception e) {
+            batch.waiters.values().forEach(waiter -> waiter.completeExceptionally(e));
+        }
+    }
+
+    private TokenValidationResult await(CompletableFuture<TokenValidationResult> result) {
+        try {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Token validation failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Token validation timed out after " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for token validation", e);
+        }
+    }
+
+    private static final class Batch {
+        // Only modified under the lock while the batch is open
+        private final Map<String, CompletableFuture<TokenValidationResult>> waiters = new HashMap<>();
+    }
+}